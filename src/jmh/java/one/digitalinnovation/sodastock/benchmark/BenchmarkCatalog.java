@@ -0,0 +1,45 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import one.digitalinnovation.sodastock.SodastockApplication;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared fixtures of the benchmarks: catalogs of sodas and an application context backed by the in-memory H2 database.
+ */
+final class BenchmarkCatalog {
+
+    private static final SodaSize[] SIZES = SodaSize.values();
+
+    private BenchmarkCatalog() {
+    }
+
+    static SodaDTO soda(int index) {
+        return new SodaDTO((long) index + 1, "Soda " + index, 500, 250, SIZES[index % SIZES.length]);
+    }
+
+    static List<SodaDTO> sodas(int catalogSize) {
+        List<SodaDTO> sodas = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            sodas.add(soda(i));
+        }
+        return sodas;
+    }
+
+    static ConfigurableApplicationContext startApplication(String... properties) {
+        return new SpringApplicationBuilder(SodastockApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.devtools.restart.enabled=false",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,80 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaJsonBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int catalogSize;
+
+    private ObjectWriter sodaWriter;
+    private ObjectReader sodaReader;
+    private ObjectWriter sodaListWriter;
+    private ObjectReader sodaListReader;
+
+    private SodaDTO soda;
+    private List<SodaDTO> sodas;
+    private byte[] sodaJson;
+    private byte[] sodaListJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        TypeReference<List<SodaDTO>> sodaListType = new TypeReference<List<SodaDTO>>() {
+        };
+        sodaWriter = objectMapper.writerFor(SodaDTO.class);
+        sodaReader = objectMapper.readerFor(SodaDTO.class);
+        sodaListWriter = objectMapper.writerFor(sodaListType);
+        sodaListReader = objectMapper.readerFor(sodaListType);
+
+        soda = BenchmarkCatalog.soda(0);
+        sodas = BenchmarkCatalog.sodas(catalogSize);
+        sodaJson = sodaWriter.writeValueAsBytes(soda);
+        sodaListJson = sodaListWriter.writeValueAsBytes(sodas);
+    }
+
+    @Benchmark
+    public byte[] writeSoda() throws IOException {
+        return sodaWriter.writeValueAsBytes(soda);
+    }
+
+    @Benchmark
+    public SodaDTO readSoda() throws IOException {
+        return sodaReader.readValue(sodaJson);
+    }
+
+    @Benchmark
+    public byte[] writeSodaList() throws IOException {
+        return sodaListWriter.writeValueAsBytes(sodas);
+    }
+
+    @Benchmark
+    public List<SodaDTO> readSodaList() throws IOException {
+        return sodaListReader.readValue(sodaListJson);
+    }
+}
@@ -0,0 +1,48 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaMapperBenchmark {
+
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    private SodaDTO sodaDTO;
+
+    private Soda soda;
+
+    @Setup
+    public void setUp() {
+        sodaDTO = BenchmarkCatalog.soda(0);
+        soda = sodaMapper.toModel(sodaDTO);
+    }
+
+    @Benchmark
+    public SodaDTO toDTO() {
+        return sodaMapper.toDTO(soda);
+    }
+
+    @Benchmark
+    public Soda toModel() {
+        return sodaMapper.toModel(sodaDTO);
+    }
+}
@@ -0,0 +1,88 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of answering a lookup for a missing soda. Each lookup first descends {@code depth} frames, roughly a
+ * servlet container, filters and Spring MVC above the service. It then reports the miss in one of three ways:
+ * an exception with a full stack trace and an eagerly formatted message (how SodaNotFoundException used to
+ * be), the stackless {@link SodaNotFoundException} or a {@link SodaResultDTO}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaOutcomeBenchmark {
+
+    private static final String MISSING_NAME = "Guarana";
+
+    @Param({"20", "120"})
+    private int depth;
+
+    @Benchmark
+    public Object missWithStackTrace() {
+        try {
+            return lookupWithStackTrace(depth);
+        } catch (StackTraceNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object missWithStacklessException() {
+        try {
+            return lookupWithStacklessException(depth);
+        } catch (SodaNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object missWithResult() {
+        return lookupWithResult(depth);
+    }
+
+    private static SodaDTO lookupWithStackTrace(int frames) throws StackTraceNotFoundException {
+        if (frames > 0) {
+            return lookupWithStackTrace(frames - 1);
+        }
+        throw new StackTraceNotFoundException(MISSING_NAME);
+    }
+
+    private static SodaDTO lookupWithStacklessException(int frames) throws SodaNotFoundException {
+        if (frames > 0) {
+            return lookupWithStacklessException(frames - 1);
+        }
+        throw new SodaNotFoundException(MISSING_NAME);
+    }
+
+    private static SodaResultDTO lookupWithResult(int frames) {
+        if (frames > 0) {
+            return lookupWithResult(frames - 1);
+        }
+        return SodaResultDTO.notFound();
+    }
+
+    private static class StackTraceNotFoundException extends Exception {
+
+        StackTraceNotFoundException(String name) {
+            super(String.format("Soda with name %s not found in system.", name));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.service.SodaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Read paths of the catalog listing and of a lookup by name, straight from the database: managed entities
+ * copied by the mapper, as they were read before, against the constructor projections of the repository.
+ * Both run in read-only transactions. Run with {@code -prof gc} to compare the allocations per read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaReadPathBenchmark {
+
+    private static final int CATALOG_SIZE = 2000;
+
+    @Param({"50", "500"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext applicationContext;
+
+    private SodaRepository sodaRepository;
+
+    private EntityManager entityManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SodaAlreadyRegisteredException {
+        applicationContext = BenchmarkCatalog.startApplication();
+        sodaRepository = applicationContext.getBean(SodaRepository.class);
+        entityManager = applicationContext.getBean(EntityManager.class);
+        readOnlyTransaction = new TransactionTemplate(applicationContext.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        SodaService sodaService = applicationContext.getBean(SodaService.class);
+        names = new String[CATALOG_SIZE];
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            names[i] = sodaService.createSoda(BenchmarkCatalog.soda(i)).getName();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            next = next + 1 >= bound ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<SodaDTO> listPageEntities(Cursor cursor) {
+        long afterId = cursor.next(CATALOG_SIZE - pageSize);
+        return readOnlyTransaction.execute(status -> entityManager
+                .createQuery("select s from Soda s where s.id > :id order by s.id", Soda.class)
+                .setParameter("id", afterId)
+                .setMaxResults(pageSize)
+                .getResultList()
+                .stream()
+                .map(sodaMapper::toDTO)
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public List<SodaDTO> listPageProjections(Cursor cursor) {
+        long afterId = cursor.next(CATALOG_SIZE - pageSize);
+        return sodaRepository.findDTOsByIdGreaterThan(afterId, PageRequest.of(0, pageSize));
+    }
+
+    @Benchmark
+    public SodaDTO findByNameEntity(Cursor cursor) {
+        String name = names[cursor.next(CATALOG_SIZE)];
+        return readOnlyTransaction.execute(status -> sodaRepository.findByName(name).map(sodaMapper::toDTO).orElse(null));
+    }
+
+    @Benchmark
+    public SodaDTO findByNameProjection(Cursor cursor) {
+        return sodaRepository.findDTOByName(names[cursor.next(CATALOG_SIZE)]).orElse(null);
+    }
+}
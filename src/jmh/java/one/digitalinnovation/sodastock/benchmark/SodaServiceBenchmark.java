@@ -0,0 +1,85 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.service.SodaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaServiceBenchmark {
+
+    @Param({"100", "10000"})
+    private int catalogSize;
+
+    private ConfigurableApplicationContext applicationContext;
+
+    private SodaService sodaService;
+
+    private String[] names;
+
+    private Long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SodaAlreadyRegisteredException {
+        applicationContext = BenchmarkCatalog.startApplication();
+        sodaService = applicationContext.getBean(SodaService.class);
+
+        names = new String[catalogSize];
+        ids = new Long[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            SodaDTO createdSoda = sodaService.createSoda(BenchmarkCatalog.soda(i));
+            names[i] = createdSoda.getName();
+            ids[i] = createdSoda.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            next = next + 1 == bound ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public SodaDTO findByName(Cursor cursor) throws SodaNotFoundException {
+        return sodaService.findByName(names[cursor.next(catalogSize)]);
+    }
+
+    @Benchmark
+    public SodaDTO incrementThenDecrement(Cursor cursor) throws SodaNotFoundException, SodaStockExceededException {
+        Long id = ids[cursor.next(catalogSize)];
+        sodaService.increment(id, 1);
+        return sodaService.decrement(id, 1);
+    }
+}
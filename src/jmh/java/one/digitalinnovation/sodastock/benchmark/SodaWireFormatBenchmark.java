@@ -0,0 +1,119 @@
+package one.digitalinnovation.sodastock.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import one.digitalinnovation.sodastock.codec.SodaBinaryCodec;
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against the binary wire format on the bodies of the stock endpoints and the catalog listing. The JSON
+ * quantity is bean-validated as the endpoint does; the binary one is range-checked by the codec itself.
+ * Run with {@code -prof gc} to compare allocation rates too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SodaWireFormatBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int catalogSize;
+
+    private Validator validator;
+    private ObjectReader quantityReader;
+    private ObjectWriter sodaWriter;
+    private ObjectWriter sodaListWriter;
+    private ObjectReader sodaListReader;
+
+    private SodaDTO soda;
+    private List<SodaDTO> sodas;
+    private byte[] quantityJson;
+    private byte[] quantityBinary;
+    private byte[] sodaListJson;
+    private byte[] sodaListBinary;
+
+    @Setup
+    public void setUp() throws IOException {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        ObjectMapper objectMapper = new ObjectMapper();
+        TypeReference<List<SodaDTO>> sodaListType = new TypeReference<List<SodaDTO>>() {
+        };
+        quantityReader = objectMapper.readerFor(QuantityDTO.class);
+        sodaWriter = objectMapper.writerFor(SodaDTO.class);
+        sodaListWriter = objectMapper.writerFor(sodaListType);
+        sodaListReader = objectMapper.readerFor(sodaListType);
+
+        soda = BenchmarkCatalog.soda(0);
+        sodas = BenchmarkCatalog.sodas(catalogSize);
+        QuantityDTO quantity = new QuantityDTO(10);
+        quantityJson = objectMapper.writeValueAsBytes(quantity);
+        quantityBinary = SodaBinaryCodec.encodeQuantity(quantity);
+        sodaListJson = sodaListWriter.writeValueAsBytes(sodas);
+        sodaListBinary = SodaBinaryCodec.encodeSodas(sodas);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<QuantityDTO>> readQuantityJson() throws IOException {
+        return validator.validate(quantityReader.<QuantityDTO>readValue(quantityJson));
+    }
+
+    @Benchmark
+    public QuantityDTO readQuantityBinary() throws IOException {
+        return SodaBinaryCodec.decodeQuantity(ByteBuffer.wrap(quantityBinary));
+    }
+
+    @Benchmark
+    public byte[] writeSodaJson() throws IOException {
+        return sodaWriter.writeValueAsBytes(soda);
+    }
+
+    @Benchmark
+    public byte[] writeSodaBinary() throws IOException {
+        return SodaBinaryCodec.encodeSoda(soda);
+    }
+
+    @Benchmark
+    public byte[] writeSodaListJson() throws IOException {
+        return sodaListWriter.writeValueAsBytes(sodas);
+    }
+
+    @Benchmark
+    public byte[] writeSodaListBinary() throws IOException {
+        return SodaBinaryCodec.encodeSodas(sodas);
+    }
+
+    @Benchmark
+    public List<SodaDTO> readSodaListJson() throws IOException {
+        return sodaListReader.readValue(sodaListJson);
+    }
+
+    @Benchmark
+    public List<SodaDTO> readSodaListBinary() throws IOException {
+        return SodaBinaryCodec.decodeSodas(ByteBuffer.wrap(sodaListBinary));
+    }
+}
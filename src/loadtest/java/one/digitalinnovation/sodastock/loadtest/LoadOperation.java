@@ -0,0 +1,25 @@
+package one.digitalinnovation.sodastock.loadtest;
+
+import java.util.Arrays;
+
+enum LoadOperation {
+
+    CREATE("create"),
+    FIND("find"),
+    LIST("list"),
+    INCREMENT("increment"),
+    DECREMENT("decrement");
+
+    private final String key;
+
+    LoadOperation(String key) {
+        this.key = key;
+    }
+
+    static LoadOperation fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown load operation " + key));
+    }
+}
@@ -0,0 +1,298 @@
+package one.digitalinnovation.sodastock.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.sodastock.SodastockApplication;
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the application on a random local port and drives a weighted mix of requests at a fixed rate from many
+ * concurrent clients. Latencies are measured from the moment each request was scheduled, so a stalled server is
+ * not hidden by clients that stop sending. Exits with status 1 when an unexpected response or a final quantity
+ * that does not match the successful adjustments is seen.
+ *
+ * Settings are read from system properties: loadtest.rate (requests per second), loadtest.clients,
+ * loadtest.duration (seconds), loadtest.sodas (sodas adjusted during the test) and loadtest.mix
+ * (weights such as create=5,find=50,list=5,increment=20,decrement=20).
+ */
+public class SodaLoadTest {
+
+    private static final String SODA_API_URL_PATH = "/api/v1/sodas";
+    private static final int SODA_MAX = 100;
+    private static final int SODA_INITIAL_QUANTITY = 50;
+    private static final int MAX_QUANTITY_PER_REQUEST = 5;
+    private static final long HIGHEST_TRACKABLE_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final int rate;
+    private final int clients;
+    private final int durationSeconds;
+    private final int sodaCount;
+    private final LoadOperation[] weightedOperations;
+
+    private final Map<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation.class);
+    private final Map<LoadOperation, LongAdder> rejections = new EnumMap<>(LoadOperation.class);
+    private final Map<LoadOperation, LongAdder> errors = new EnumMap<>(LoadOperation.class);
+    private final List<String> correctnessProblems = new ArrayList<>();
+
+    private SodaDTO[] sodas;
+    private AtomicIntegerArray appliedDeltas;
+
+    SodaLoadTest(String baseUrl, int rate, int clients, int durationSeconds, int sodaCount, String mix) {
+        this.baseUrl = baseUrl;
+        this.rate = rate;
+        this.clients = clients;
+        this.durationSeconds = durationSeconds;
+        this.sodaCount = sodaCount;
+        this.weightedOperations = parseMix(mix);
+        for (LoadOperation operation : LoadOperation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY_MICROS, 3));
+            rejections.put(operation, new LongAdder());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext applicationContext = new SpringApplicationBuilder(SodastockApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run(args);
+        int port = ((WebServerApplicationContext) applicationContext).getWebServer().getPort();
+
+        boolean passed;
+        try {
+            SodaLoadTest loadTest = new SodaLoadTest("http://localhost:" + port,
+                    Integer.getInteger("loadtest.rate", 500),
+                    Integer.getInteger("loadtest.clients", 64),
+                    Integer.getInteger("loadtest.duration", 30),
+                    Integer.getInteger("loadtest.sodas", 50),
+                    System.getProperty("loadtest.mix", "create=5,find=50,list=5,increment=20,decrement=20"));
+            passed = loadTest.run();
+        } finally {
+            applicationContext.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run() throws Exception {
+        seedSodas();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        AtomicLong ticks = new AtomicLong();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(clients);
+        List<Future<?>> workers = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            workers.add(executorService.submit(() -> drive(ticks, startNanos, endNanos, intervalNanos)));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executorService.shutdown();
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        verifyFinalQuantities();
+        report(elapsedSeconds);
+        return correctnessProblems.isEmpty() && errors.values().stream().mapToLong(LongAdder::sum).sum() == 0;
+    }
+
+    private void drive(AtomicLong ticks, long startNanos, long endNanos, long intervalNanos) {
+        while (true) {
+            long intendedStartNanos = startNanos + ticks.getAndIncrement() * intervalNanos;
+            if (intendedStartNanos >= endNanos) {
+                return;
+            }
+            long waitNanos = intendedStartNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+
+            LoadOperation operation = weightedOperations[ThreadLocalRandom.current().nextInt(weightedOperations.length)];
+            try {
+                execute(operation);
+            } catch (IOException e) {
+                errors.get(operation).increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+            latencies.get(operation).recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_LATENCY_MICROS));
+        }
+    }
+
+    private void execute(LoadOperation operation) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sodaIndex = random.nextInt(sodaCount);
+        int quantity = random.nextInt(1, MAX_QUANTITY_PER_REQUEST + 1);
+
+        switch (operation) {
+            case CREATE:
+                SodaDTO sodaDTO = new SodaDTO(null, "Load " + UUID.randomUUID(), SODA_MAX, SODA_INITIAL_QUANTITY, SodaSize.REGULAR);
+                expectStatus(operation, send(post(SODA_API_URL_PATH, sodaDTO)), 201);
+                break;
+            case FIND:
+                expectStatus(operation, send(get(SODA_API_URL_PATH + "/" + encode(sodas[sodaIndex].getName()))), 200);
+                break;
+            case LIST:
+                expectStatus(operation, send(get(SODA_API_URL_PATH + "?limit=50")), 200);
+                break;
+            case INCREMENT:
+                adjust(operation, sodaIndex, "/increment", quantity, quantity);
+                break;
+            case DECREMENT:
+                adjust(operation, sodaIndex, "/decrement", quantity, -quantity);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported load operation " + operation);
+        }
+    }
+
+    private void adjust(LoadOperation operation, int sodaIndex, String subPath, int quantity, int delta) throws IOException, InterruptedException {
+        String path = SODA_API_URL_PATH + "/" + sodas[sodaIndex].getId() + subPath;
+        HttpResponse<String> response = send(patch(path, new QuantityDTO(quantity)));
+        if (response.statusCode() == 200) {
+            appliedDeltas.addAndGet(sodaIndex, delta);
+        } else if (response.statusCode() == 400) {
+            rejections.get(operation).increment();
+        } else {
+            errors.get(operation).increment();
+        }
+    }
+
+    private void expectStatus(LoadOperation operation, HttpResponse<String> response, int expectedStatus) {
+        if (response.statusCode() != expectedStatus) {
+            errors.get(operation).increment();
+        }
+    }
+
+    private void seedSodas() throws IOException, InterruptedException {
+        sodas = new SodaDTO[sodaCount];
+        appliedDeltas = new AtomicIntegerArray(sodaCount);
+        for (int i = 0; i < sodaCount; i++) {
+            SodaDTO sodaDTO = new SodaDTO(null, "Seed " + i, SODA_MAX, SODA_INITIAL_QUANTITY, SodaSize.values()[i % SodaSize.values().length]);
+            HttpResponse<String> response = send(post(SODA_API_URL_PATH, sodaDTO));
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Could not create seed soda: " + response.statusCode() + " " + response.body());
+            }
+            sodas[i] = objectMapper.readValue(response.body(), SodaDTO.class);
+        }
+    }
+
+    private void verifyFinalQuantities() throws IOException, InterruptedException {
+        for (int i = 0; i < sodaCount; i++) {
+            HttpResponse<String> response = send(get(SODA_API_URL_PATH + "/" + encode(sodas[i].getName())));
+            if (response.statusCode() != 200) {
+                correctnessProblems.add(String.format("%s could not be read back: status %d", sodas[i].getName(), response.statusCode()));
+                continue;
+            }
+            int quantity = objectMapper.readValue(response.body(), SodaDTO.class).getQuantity();
+            int expectedQuantity = SODA_INITIAL_QUANTITY + appliedDeltas.get(i);
+            if (quantity != expectedQuantity) {
+                correctnessProblems.add(String.format("%s has quantity %d, but the successful adjustments add up to %d",
+                        sodas[i].getName(), quantity, expectedQuantity));
+            }
+            if (quantity < 0 || quantity > SODA_MAX) {
+                correctnessProblems.add(String.format("%s has quantity %d, outside 0..%d", sodas[i].getName(), quantity, SODA_MAX));
+            }
+        }
+    }
+
+    private void report(double elapsedSeconds) {
+        long totalRequests = latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        System.out.printf("%nTarget rate: %d req/s, clients: %d, duration: %d s%n", rate, clients, durationSeconds);
+        System.out.printf("Achieved throughput: %.1f req/s (%d requests)%n%n", totalRequests / elapsedSeconds, totalRequests);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "rejected", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (LoadOperation operation : LoadOperation.values()) {
+            Histogram histogram = latencies.get(operation);
+            System.out.printf("%-10s %10d %10d %10d %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.name().toLowerCase(),
+                    histogram.getTotalCount(),
+                    rejections.get(operation).sum(),
+                    errors.get(operation).sum(),
+                    histogram.getValueAtPercentile(50.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+
+        if (correctnessProblems.isEmpty()) {
+            System.out.printf("%nCorrectness: final quantities match the successful adjustments of %d sodas%n", sodaCount);
+        } else {
+            System.out.printf("%nCorrectness: %d problems found%n", correctnessProblems.size());
+            correctnessProblems.forEach(problem -> System.out.println("  " + problem));
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) throws IOException {
+        return jsonRequest(path).POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))).build();
+    }
+
+    private HttpRequest patch(String path, Object body) throws IOException {
+        return jsonRequest(path).method("PATCH", HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))).build();
+    }
+
+    private HttpRequest.Builder jsonRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Content-Type", "application/json");
+    }
+
+    private static String encode(String pathSegment) {
+        return pathSegment.replace(" ", "%20");
+    }
+
+    private static LoadOperation[] parseMix(String mix) {
+        List<LoadOperation> weightedOperations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] operationAndWeight = entry.trim().split("=");
+            LoadOperation operation = LoadOperation.fromKey(operationAndWeight[0].trim());
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            for (int i = 0; i < weight; i++) {
+                weightedOperations.add(operation);
+            }
+        }
+        if (weightedOperations.isEmpty()) {
+            throw new IllegalArgumentException("The load mix must have at least one operation with a positive weight");
+        }
+        return weightedOperations.toArray(new LoadOperation[0]);
+    }
+}
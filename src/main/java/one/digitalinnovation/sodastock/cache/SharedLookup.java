@@ -0,0 +1,8 @@
+package one.digitalinnovation.sodastock.cache;
+
+@FunctionalInterface
+public interface SharedLookup<T, E extends Exception> {
+
+    T load() throws E;
+
+}
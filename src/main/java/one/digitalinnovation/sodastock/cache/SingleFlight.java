@@ -0,0 +1,96 @@
+package one.digitalinnovation.sodastock.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses concurrent identical lookups into one. The first caller for an operation and key runs the
+ * lookup; callers arriving while it is in flight wait for it and share its result or its exception. Once
+ * the lookup finishes the key is released, so later callers start a fresh lookup. Callers are counted as
+ * "sodastock.single-flight.calls" tagged with the operation and whether they led or joined a lookup; the
+ * joined share of the calls is the coalescing ratio.
+ */
+@Component
+public class SingleFlight {
+
+    private final ConcurrentMap<FlightKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("sodastock.single-flight.in-flight", flights, ConcurrentMap::size)
+                .description("Number of lookups currently shared by their callers")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T execute(String operation, Object key, SharedLookup<T, E> lookup) throws E {
+        FlightKey flightKey = new FlightKey(operation, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = flights.putIfAbsent(flightKey, flight);
+
+        if (inFlight != null) {
+            meterRegistry.counter("sodastock.single-flight.calls", "operation", operation, "role", "joined").increment();
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                throw (E) rethrowUnchecked(e.getCause());
+            }
+        }
+
+        meterRegistry.counter("sodastock.single-flight.calls", "operation", operation, "role", "led").increment();
+        try {
+            T result = lookup.load();
+            flights.remove(flightKey, flight);
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            flights.remove(flightKey, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Exception rethrowUnchecked(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return (Exception) cause;
+    }
+
+    private static final class FlightKey {
+
+        private final String operation;
+        private final Object key;
+
+        private FlightKey(String operation, Object key) {
+            this.operation = operation;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey flightKey = (FlightKey) other;
+            return operation.equals(flightKey.operation) && key.equals(flightKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operation.hashCode() + key.hashCode();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package one.digitalinnovation.sodastock.cache;
+
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change versions behind the ETags of the soda reads. Every committed soda change bumps the catalog version
+ * and stamps the changed name with it; names not changed since startup share version zero. Tags carry the
+ * startup time, so tags handed out before a restart never match afterwards, and the media type of the
+ * representation, so a JSON tag never validates a binary body or the other way around.
+ * <p>
+ * The controller takes the tag before it reads the body, so a version must only move once the body reflects
+ * the change: this listener runs last, after the catalog read model, which listens with the highest
+ * precedence. A read racing a change then pairs at worst an old tag with a new body, which only costs
+ * the client a full response on its next request, never a 304 for a stale body.
+ * <p>
+ * Deleted names are dropped. The controller only tags sodas it found, and a soda created again under a deleted
+ * name gets a new version, so a tag handed out before the deletion never matches again.
+ */
+@Component
+public class SodaVersions {
+
+    private static final long UNCHANGED = 0L;
+
+    private final long epoch;
+    private final AtomicLong catalogVersion = new AtomicLong(UNCHANGED);
+    private final ConcurrentMap<String, Long> versionsByName = new ConcurrentHashMap<>();
+
+    public SodaVersions() {
+        this(System.currentTimeMillis());
+    }
+
+    SodaVersions(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public String catalogETag(MediaType representation) {
+        return eTagOf(catalogVersion.get(), representation);
+    }
+
+    public String sodaETag(String name, MediaType representation) {
+        return eTagOf(versionsByName.getOrDefault(name, UNCHANGED), representation);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        String name = event.getSoda().getName();
+        long version = catalogVersion.incrementAndGet();
+        if (event.getType() == SodaChangeType.DELETED) {
+            versionsByName.computeIfPresent(name, (key, current) -> current > version ? current : null);
+        } else {
+            versionsByName.merge(name, version, Math::max);
+        }
+    }
+
+    int trackedNames() {
+        return versionsByName.size();
+    }
+
+    private String eTagOf(long version, MediaType representation) {
+        return "\"" + Long.toString(epoch, 36) + "-" + Long.toString(version, 36) + "-" + representation.getSubtype() + "\"";
+    }
+}
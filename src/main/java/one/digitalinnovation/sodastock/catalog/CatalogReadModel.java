@@ -0,0 +1,236 @@
+package one.digitalinnovation.sodastock.catalog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Read side of the catalog. Holds the current {@link CatalogSnapshot}, loaded from the soda table on startup and
+ * kept current by applying each committed soda change to it in place, so a change costs the same whatever the
+ * size of the catalog. Readers take the current snapshot without locking and never reach the database; writers
+ * are serialized so changes to the same soda never interleave.
+ * <p>
+ * Changes committed concurrently may be delivered out of order. Stock changes are applied as deltas, which
+ * commute among themselves. A stock change that arrives before the creation of its soda is parked and applied
+ * when the creation arrives, and a creation for a soda the snapshot already holds is ignored. A deleted id
+ * leaves a tombstone, so a creation or stock change delivered after the deletion cannot bring the soda back.
+ * Parked deltas and tombstones only have to outlive the delivery of the events racing them and are pruned
+ * after a minute.
+ * <p>
+ * A reload reads the table while changes keep committing, so a change may be in the rows read and still be
+ * delivered afterwards. Each change is therefore tracked from its publication until it is delivered or rolled
+ * back, and a reload keeps the sodas whose changes were delivered while it read the table, or are still on
+ * their way, as the events left them; their later events then apply on top of those. Every other soda is
+ * taken from the table.
+ */
+@Slf4j
+@Component
+public class CatalogReadModel {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final long LATE_EVENT_WINDOW_MILLIS = 60_000L;
+
+    private final SodaRepository sodaRepository;
+    private final WriteBehindStockEngine stockEngine;
+    private final Clock clock;
+    private final long maxStalenessMillis;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.of(Collections.emptyList()));
+    private volatile long consistentAt;
+    private final Map<Long, Long> deletedAtById = new HashMap<>();
+    private final Map<Long, ParkedDelta> parkedDeltasById = new HashMap<>();
+    private final Map<Long, Integer> pendingChangesById = new ConcurrentHashMap<>();
+    private Set<Long> changedWhileLoading;
+
+    @Autowired
+    public CatalogReadModel(SodaRepository sodaRepository,
+                            WriteBehindStockEngine stockEngine,
+                            MeterRegistry meterRegistry,
+                            @Value("${sodastock.catalog.max-staleness}") Duration maxStaleness) {
+        this(sodaRepository, stockEngine, meterRegistry, maxStaleness, Clock.systemUTC());
+    }
+
+    CatalogReadModel(SodaRepository sodaRepository,
+                     WriteBehindStockEngine stockEngine,
+                     MeterRegistry meterRegistry,
+                     Duration maxStaleness,
+                     Clock clock) {
+        this.sodaRepository = sodaRepository;
+        this.stockEngine = stockEngine;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.clock = clock;
+        this.consistentAt = clock.millis();
+
+        Gauge.builder("sodastock.catalog.staleness", this, CatalogReadModel::stalenessMillis)
+                .description("Milliseconds since the catalog snapshot last matched the soda table")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("sodastock.catalog.sodas", this, readModel -> readModel.snapshot().size())
+                .description("Number of sodas in the catalog snapshot")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        synchronized (this) {
+            changedWhileLoading = new HashSet<>();
+        }
+        List<SodaDTO> sodas = new ArrayList<>();
+        List<SodaDTO> page = sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, LOAD_PAGE_SIZE));
+        while (!page.isEmpty()) {
+            sodas.addAll(page);
+            Long lastId = page.get(page.size() - 1).getId();
+            page = sodaRepository.findDTOsByIdGreaterThan(lastId, PageRequest.of(0, LOAD_PAGE_SIZE));
+        }
+        synchronized (this) {
+            CatalogSnapshot current = snapshot.get();
+            CatalogSnapshot loaded = CatalogSnapshot.of(sodas);
+            Set<Long> unsettledIds = new HashSet<>(changedWhileLoading);
+            unsettledIds.addAll(pendingChangesById.keySet());
+            for (Long id : unsettledIds) {
+                Optional<SodaDTO> eventSoda = current.findById(id);
+                if (eventSoda.isPresent()) {
+                    loaded.put(eventSoda.get());
+                } else {
+                    loaded.remove(id);
+                }
+            }
+            changedWhileLoading = null;
+            snapshot.set(loaded);
+            consistentAt = clock.millis();
+        }
+    }
+
+    public CatalogSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Runs when a change is published, inside its transaction, so a reload knows which changes may still be
+     * delivered after it read the table. Ordered before {@link #onSodaChanged}, which runs right away for a
+     * change published outside a transaction.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onSodaChangePublished(SodaChangedEvent event) {
+        pendingChangesById.merge(event.getSoda().getId(), 1, Integer::sum);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onSodaChangeRolledBack(SodaChangedEvent event) {
+        settle(event.getSoda().getId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSodaChanged(SodaChangedEvent event) {
+        CatalogSnapshot current = snapshot.get();
+        SodaDTO sodaDTO = event.getSoda();
+        Long id = sodaDTO.getId();
+        settle(id);
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(id);
+        }
+        if (deletedAtById.containsKey(id)) {
+            return;
+        }
+        switch (event.getType()) {
+            case CREATED:
+                if (!current.findById(id).isPresent()) {
+                    ParkedDelta parkedDelta = parkedDeltasById.remove(id);
+                    current.put(sodaDTO);
+                    if (parkedDelta != null) {
+                        current.applyStockDelta(id, parkedDelta.delta);
+                    }
+                }
+                break;
+            case DELETED:
+                deletedAtById.put(id, clock.millis());
+                parkedDeltasById.remove(id);
+                current.remove(id);
+                break;
+            default:
+                if (current.findById(id).isPresent()) {
+                    current.applyStockDelta(id, event.getDelta());
+                } else {
+                    parkedDeltasById.computeIfAbsent(id, parkedId -> new ParkedDelta(clock.millis())).delta += event.getDelta();
+                }
+        }
+    }
+
+    /**
+     * Compares the count and units per size of the snapshot with the soda table. A snapshot that keeps up reads
+     * as fresh on every check; one that has drifted lets the staleness gauge grow until both agree again, and a
+     * disagreement lasting longer than sodastock.catalog.max-staleness reloads the snapshot. With write-behind
+     * on, the table trails the accepted stock by design and a reload would drop the deltas not flushed yet, so
+     * nothing is compared and the gauge stays at zero.
+     */
+    @Scheduled(fixedDelayString = "${sodastock.catalog.verify-interval}")
+    public void verify() {
+        if (stockEngine.isEnabled()) {
+            consistentAt = clock.millis();
+            pruneLateEventState();
+            return;
+        }
+        Set<SodaSizeAggregateDTO> tableAggregates = new HashSet<>(sodaRepository.aggregateBySize());
+        if (tableAggregates.equals(snapshot.get().aggregates())) {
+            consistentAt = clock.millis();
+        } else if (stalenessMillis() > maxStalenessMillis) {
+            log.warn("Catalog snapshot disagreed with the soda table for {} ms, reloading it", (long) stalenessMillis());
+            load();
+        }
+        pruneLateEventState();
+    }
+
+    private synchronized void pruneLateEventState() {
+        long expiredBefore = clock.millis() - LATE_EVENT_WINDOW_MILLIS;
+        deletedAtById.values().removeIf(deletedAt -> deletedAt < expiredBefore);
+        parkedDeltasById.values().removeIf(parkedDelta -> parkedDelta.parkedAt < expiredBefore);
+    }
+
+    private void settle(Long id) {
+        pendingChangesById.computeIfPresent(id, (pendingId, pending) -> pending == 1 ? null : pending - 1);
+    }
+
+    double stalenessMillis() {
+        return Math.max(0L, clock.millis() - consistentAt);
+    }
+
+    private static final class ParkedDelta {
+
+        private final long parkedAt;
+        private int delta;
+
+        private ParkedDelta(long parkedAt) {
+            this.parkedAt = parkedAt;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package one.digitalinnovation.sodastock.catalog;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The whole catalog as loaded from the soda table and kept current by the writes applied to it since: every soda
+ * ordered by id, the same sodas split per size, an index from name to id and the count and units per size. Each
+ * write updates the entries it touches in place, so it costs a lookup in the id and size maps whatever the size
+ * of the catalog, and readers never take a lock. A reader sees every soda either before or after a write, but a
+ * page read while writes land may mix sodas from before and after them. Sodas are replaced rather than changed,
+ * are shared by every reader and must be treated as read-only. Writes must be serialized by the caller.
+ */
+public final class CatalogSnapshot {
+
+    private final ConcurrentNavigableMap<Long, SodaDTO> sodas = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final Map<SodaSize, ConcurrentNavigableMap<Long, SodaDTO>> sodasBySize = new EnumMap<>(SodaSize.class);
+    private final AtomicLongArray countsBySize = new AtomicLongArray(SodaSize.values().length);
+    private final AtomicLongArray unitsBySize = new AtomicLongArray(SodaSize.values().length);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private CatalogSnapshot() {
+        for (SodaSize sodaSize : SodaSize.values()) {
+            sodasBySize.put(sodaSize, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public static CatalogSnapshot of(Collection<SodaDTO> sodas) {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        sodas.forEach(snapshot::put);
+        return snapshot;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public Optional<SodaDTO> findById(Long id) {
+        return Optional.ofNullable(sodas.get(id));
+    }
+
+    public Optional<SodaDTO> findByName(String name) {
+        Long id = idsByName.get(name);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    /**
+     * Up to {@code limit} sodas with an id greater than {@code afterId}, optionally of one size, in id order.
+     */
+    public List<SodaDTO> page(long afterId, int limit, SodaSize size) {
+        ConcurrentNavigableMap<Long, SodaDTO> source = size == null ? sodas : sodasBySize.get(size);
+        List<SodaDTO> page = new ArrayList<>(Math.min(limit, 256));
+        Iterator<SodaDTO> iterator = source.tailMap(afterId, false).values().iterator();
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    /**
+     * Number of sodas and units per size, leaving out sizes without sodas, in the shape of
+     * {@link one.digitalinnovation.sodastock.repository.SodaRepository#aggregateBySize()}.
+     */
+    public Set<SodaSizeAggregateDTO> aggregates() {
+        Set<SodaSizeAggregateDTO> aggregates = new HashSet<>();
+        for (SodaSize sodaSize : SodaSize.values()) {
+            long count = countsBySize.get(sodaSize.ordinal());
+            if (count > 0) {
+                aggregates.add(new SodaSizeAggregateDTO(sodaSize, count, unitsBySize.get(sodaSize.ordinal())));
+            }
+        }
+        return aggregates;
+    }
+
+    void put(SodaDTO soda) {
+        SodaDTO copy = copyOf(soda);
+        SodaDTO previous = sodas.put(copy.getId(), copy);
+        if (previous != null) {
+            forget(previous);
+        } else {
+            size.incrementAndGet();
+        }
+        idsByName.put(copy.getName(), copy.getId());
+        sodasBySize.get(copy.getSize()).put(copy.getId(), copy);
+        countsBySize.incrementAndGet(copy.getSize().ordinal());
+        unitsBySize.addAndGet(copy.getSize().ordinal(), copy.getQuantity());
+    }
+
+    void remove(Long id) {
+        SodaDTO previous = sodas.remove(id);
+        if (previous != null) {
+            forget(previous);
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Applies a stock delta to one soda by replacing it with a copy holding the new quantity. Names and sizes do
+     * not change with stock, so only the soda entries and the units of its size are touched.
+     */
+    void applyStockDelta(Long id, int delta) {
+        SodaDTO current = sodas.get(id);
+        if (current == null) {
+            return;
+        }
+        SodaDTO changed = new SodaDTO(current.getId(), current.getName(), current.getMax(),
+                current.getQuantity() + delta, current.getSize());
+        sodas.put(id, changed);
+        sodasBySize.get(changed.getSize()).put(id, changed);
+        unitsBySize.addAndGet(changed.getSize().ordinal(), delta);
+    }
+
+    private void forget(SodaDTO soda) {
+        idsByName.remove(soda.getName(), soda.getId());
+        sodasBySize.get(soda.getSize()).remove(soda.getId());
+        countsBySize.decrementAndGet(soda.getSize().ordinal());
+        unitsBySize.addAndGet(soda.getSize().ordinal(), -soda.getQuantity());
+    }
+
+    private static SodaDTO copyOf(SodaDTO soda) {
+        return new SodaDTO(soda.getId(), soda.getName(), soda.getMax(), soda.getQuantity(), soda.getSize());
+    }
+}
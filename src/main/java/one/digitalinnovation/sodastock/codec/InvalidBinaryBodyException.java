@@ -0,0 +1,13 @@
+package one.digitalinnovation.sodastock.codec;
+
+import java.io.IOException;
+
+/**
+ * A body in the binary wire format that is well-formed but holds a value out of range.
+ */
+public class InvalidBinaryBodyException extends IOException {
+
+    public InvalidBinaryBodyException(String message) {
+        super(message);
+    }
+}
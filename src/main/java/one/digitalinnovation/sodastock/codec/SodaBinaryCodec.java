@@ -0,0 +1,139 @@
+package one.digitalinnovation.sodastock.codec;
+
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.springframework.http.MediaType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary wire format of the stock endpoints, encoded and decoded field by field without reflection.
+ * Every number is big-endian and fixed-width:
+ * <pre>
+ * quantity: int32 quantity
+ * soda:     int64 id | int32 max | int32 quantity | int8 size ordinal | uint16 name length | UTF-8 name
+ * sodas:    int32 count | count sodas
+ * </pre>
+ * Encoding sizes the buffer exactly up front; decoding reads from a heap buffer holding the whole body.
+ * Decoding a quantity enforces the constraints of {@link QuantityDTO}, so bodies in this format skip bean validation.
+ */
+public final class SodaBinaryCodec {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-sodastock-binary";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final int MIN_QUANTITY = 1;
+    static final int MAX_QUANTITY = 100;
+    private static final int QUANTITY_BYTES = Integer.BYTES;
+    private static final int SODA_FIXED_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES + Byte.BYTES + Short.BYTES;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+    private static final SodaSize[] SIZES = SodaSize.values();
+
+    private SodaBinaryCodec() {
+    }
+
+    public static byte[] encodeQuantity(QuantityDTO quantityDTO) {
+        return ByteBuffer.allocate(QUANTITY_BYTES).putInt(quantityDTO.getQuantity()).array();
+    }
+
+    public static QuantityDTO decodeQuantity(ByteBuffer buffer) throws InvalidBinaryBodyException {
+        try {
+            int quantity = buffer.getInt();
+            if (quantity < MIN_QUANTITY || quantity > MAX_QUANTITY) {
+                throw new InvalidBinaryBodyException(
+                        "Quantity must be between " + MIN_QUANTITY + " and " + MAX_QUANTITY + ": " + quantity);
+            }
+            return new QuantityDTO(quantity);
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public static byte[] encodeSoda(SodaDTO sodaDTO) throws InvalidBinaryBodyException {
+        byte[] name = nameOf(sodaDTO);
+        ByteBuffer buffer = ByteBuffer.allocate(SODA_FIXED_BYTES + name.length);
+        putSoda(buffer, sodaDTO, name);
+        return buffer.array();
+    }
+
+    public static SodaDTO decodeSoda(ByteBuffer buffer) throws InvalidBinaryBodyException {
+        try {
+            return getSoda(buffer);
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public static byte[] encodeSodas(List<SodaDTO> sodaDTOs) throws InvalidBinaryBodyException {
+        byte[][] names = new byte[sodaDTOs.size()][];
+        int length = Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = nameOf(sodaDTOs.get(i));
+            length += SODA_FIXED_BYTES + names[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).putInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            putSoda(buffer, sodaDTOs.get(i), names[i]);
+        }
+        return buffer.array();
+    }
+
+    public static List<SodaDTO> decodeSodas(ByteBuffer buffer) throws InvalidBinaryBodyException {
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / SODA_FIXED_BYTES) {
+                throw new InvalidBinaryBodyException("Soda count does not match the body length: " + count);
+            }
+            List<SodaDTO> sodaDTOs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sodaDTOs.add(getSoda(buffer));
+            }
+            return sodaDTOs;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    private static byte[] nameOf(SodaDTO sodaDTO) throws InvalidBinaryBodyException {
+        byte[] name = sodaDTO.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new InvalidBinaryBodyException("Soda name longer than " + MAX_NAME_LENGTH + " bytes: " + name.length);
+        }
+        return name;
+    }
+
+    private static void putSoda(ByteBuffer buffer, SodaDTO sodaDTO, byte[] name) {
+        buffer.putLong(sodaDTO.getId())
+                .putInt(sodaDTO.getMax())
+                .putInt(sodaDTO.getQuantity())
+                .put((byte) sodaDTO.getSize().ordinal())
+                .putShort((short) name.length)
+                .put(name);
+    }
+
+    private static SodaDTO getSoda(ByteBuffer buffer) throws InvalidBinaryBodyException {
+        long id = buffer.getLong();
+        int max = buffer.getInt();
+        int quantity = buffer.getInt();
+        int sizeOrdinal = Byte.toUnsignedInt(buffer.get());
+        if (sizeOrdinal >= SIZES.length) {
+            throw new InvalidBinaryBodyException("Unknown soda size ordinal: " + sizeOrdinal);
+        }
+        int nameLength = Short.toUnsignedInt(buffer.getShort());
+        if (nameLength > buffer.remaining()) {
+            throw truncated();
+        }
+        String name = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), nameLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + nameLength);
+        return new SodaDTO(id, name, max, quantity, SIZES[sizeOrdinal]);
+    }
+
+    private static InvalidBinaryBodyException truncated() {
+        return new InvalidBinaryBodyException("Truncated binary body");
+    }
+}
@@ -0,0 +1,90 @@
+package one.digitalinnovation.sodastock.codec;
+
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reads {@link QuantityDTO} bodies and writes sodas and lists of sodas in the {@link SodaBinaryCodec} format,
+ * for requests whose Content-Type or Accept header asks for it. Those are the only bodies exchanged in the
+ * format, so no other endpoint accepts a binary request body.
+ */
+public class SodaBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public SodaBinaryHttpMessageConverter() {
+        super(SodaBinaryCodec.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == QuantityDTO.class || clazz == SodaDTO.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == QuantityDTO.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return type == QuantityDTO.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        Type valueType = type != null ? type : clazz;
+        return (valueType == SodaDTO.class || isSodaList(valueType)) && canWrite(mediaType);
+    }
+
+    @Override
+    public QuantityDTO read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(StreamUtils.copyToByteArray(inputMessage.getBody()));
+        try {
+            QuantityDTO value = SodaBinaryCodec.decodeQuantity(buffer);
+            if (buffer.hasRemaining()) {
+                throw new InvalidBinaryBodyException(buffer.remaining() + " bytes left after the binary body");
+            }
+            return value;
+        } catch (InvalidBinaryBodyException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] body;
+        try {
+            body = value instanceof SodaDTO
+                    ? SodaBinaryCodec.encodeSoda((SodaDTO) value)
+                    : SodaBinaryCodec.encodeSodas((List<SodaDTO>) value);
+        } catch (InvalidBinaryBodyException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+    private static boolean isSodaList(Type type) {
+        ResolvableType resolvableType = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolvableType.toClass())
+                && resolvableType.getGeneric(0).toClass() == SodaDTO.class;
+    }
+}
@@ -0,0 +1,35 @@
+package one.digitalinnovation.sodastock.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Gives the async requests their handler marked with {@link #LONG_RUNNING_ATTRIBUTE} the timeout of
+ * sodastock.async.long-running-timeout. Every other async request keeps the default request timeout.
+ */
+@Component
+public class LongRunningRequestTimeout implements CallableProcessingInterceptor {
+
+    public static final String LONG_RUNNING_ATTRIBUTE = LongRunningRequestTimeout.class.getName() + ".LONG_RUNNING";
+
+    private final long timeoutMillis;
+
+    public LongRunningRequestTimeout(@Value("${sodastock.async.long-running-timeout}") Duration timeout) {
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        if (request instanceof AsyncWebRequest
+                && request.getAttribute(LONG_RUNNING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            ((AsyncWebRequest) request).setTimeout(timeoutMillis);
+        }
+    }
+}
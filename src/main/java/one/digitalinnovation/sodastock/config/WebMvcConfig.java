@@ -0,0 +1,31 @@
+package one.digitalinnovation.sodastock.config;
+
+import one.digitalinnovation.sodastock.codec.SodaBinaryHttpMessageConverter;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final LongRunningRequestTimeout longRunningRequestTimeout;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(longRunningRequestTimeout);
+    }
+
+    /**
+     * Appended after the JSON converter, so clients that accept anything keep getting JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new SodaBinaryHttpMessageConverter());
+    }
+}
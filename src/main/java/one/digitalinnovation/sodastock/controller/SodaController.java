@@ -1,33 +1,89 @@
 package one.digitalinnovation.sodastock.controller;
 
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.cache.SodaVersions;
+import one.digitalinnovation.sodastock.codec.SodaBinaryCodec;
+import one.digitalinnovation.sodastock.config.LongRunningRequestTimeout;
 import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.ReservationDTO;
+import one.digitalinnovation.sodastock.dto.ReservationRequestDTO;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportReportDTO;
+import one.digitalinnovation.sodastock.dto.SodaPageDTO;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementBatchDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementResultDTO;
+import one.digitalinnovation.sodastock.dto.StockQuantityAtDTO;
+import one.digitalinnovation.sodastock.enums.SodaResultStatus;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.InvalidImportFileException;
+import one.digitalinnovation.sodastock.exception.InvalidStockThresholdException;
+import one.digitalinnovation.sodastock.exception.ReservationNotFoundException;
+import one.digitalinnovation.sodastock.exception.ReservationsUnavailableException;
 import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
 import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
 import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.idempotency.IdempotencyStore;
+import one.digitalinnovation.sodastock.idempotency.StockOperation;
+import one.digitalinnovation.sodastock.service.ReservationService;
+import one.digitalinnovation.sodastock.service.SodaExportService;
+import one.digitalinnovation.sodastock.service.SodaImportService;
 import one.digitalinnovation.sodastock.service.SodaService;
+import one.digitalinnovation.sodastock.service.StockHistoryService;
+import one.digitalinnovation.sodastock.stream.StockEventStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/sodas")
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class SodaController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     private final SodaService sodaService;
+    private final SodaExportService sodaExportService;
+    private final SodaImportService sodaImportService;
+    private final IdempotencyStore idempotencyStore;
+    private final StockHistoryService stockHistoryService;
+    private final SodaVersions sodaVersions;
+    private final ReservationService reservationService;
+    private final StockEventStream stockEventStream;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -35,14 +91,82 @@ public class SodaController {
         return sodaService.createSoda(sodaDTO);
     }
 
+    @PostMapping(value = "/import", consumes = CSV_MEDIA_TYPE)
+    public SodaImportReportDTO importCsv(InputStream body) throws IOException, InvalidImportFileException {
+        return sodaImportService.importCsv(body);
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON_MEDIA_TYPE)
+    public SodaImportReportDTO importNdjson(InputStream body) throws IOException {
+        return sodaImportService.importNdjson(body);
+    }
+
     @GetMapping("/{name}")
-    public SodaDTO findByName(@PathVariable String name) throws SodaNotFoundException {
-        return sodaService.findByName(name);
+    public ResponseEntity<SodaDTO> findByName(@PathVariable String name, WebRequest webRequest, HttpServletResponse servletResponse)
+            throws SodaNotFoundException {
+        servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String eTag = sodaVersions.sodaETag(name, representationOf(webRequest));
+        SodaResultDTO result = sodaService.tryFindByName(name);
+        if (result.getStatus() == SodaResultStatus.NOT_FOUND) {
+            throw new SodaNotFoundException(name);
+        }
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok(result.getSoda());
     }
 
     @GetMapping
-    public List<SodaDTO> listSodas() {
-        return sodaService.listAll();
+    public ResponseEntity<List<SodaDTO>> listSodas(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   @RequestParam(required = false) SodaSize size,
+                                                   WebRequest webRequest,
+                                                   HttpServletResponse servletResponse) throws InvalidCursorException {
+        servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (webRequest.checkNotModified(sodaVersions.catalogETag(representationOf(webRequest)))) {
+            return null;
+        }
+        SodaPageDTO sodaPageDTO = sodaService.listPage(cursor, limit, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (sodaPageDTO.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, sodaPageDTO.getNextCursor());
+        }
+        return response.body(sodaPageDTO.getSodas());
+    }
+
+    @GetMapping("/stock-levels")
+    public List<SodaDTO> findByStockLevel(@RequestParam(required = false) Double below,
+                                          @RequestParam(required = false) Double above,
+                                          @RequestParam(defaultValue = "100") int limit) throws InvalidStockThresholdException {
+        return sodaService.findByStockLevel(below, above, limit);
+    }
+
+    @GetMapping("/search")
+    public List<SodaDTO> searchByName(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return sodaService.searchByName(q, limit);
+    }
+
+    @GetMapping("/aggregates")
+    public List<SodaSizeAggregateDTO> aggregateBySize() {
+        return sodaService.aggregateBySize();
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportSodas(WebRequest webRequest) {
+        webRequest.setAttribute(LongRunningRequestTimeout.LONG_RUNNING_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                .body(sodaExportService::exportAll);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStockChanges(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return stockEventStream.subscribe(lastEventId);
+    }
+
+    @GetMapping("/{id}/stock")
+    public StockQuantityAtDTO quantityAt(@PathVariable Long id, @RequestParam(required = false) Instant at) throws SodaNotFoundException {
+        return stockHistoryService.quantityAt(id, at == null ? Instant.now() : at);
     }
 
     @DeleteMapping("/{id}")
@@ -51,14 +175,112 @@ public class SodaController {
         sodaService.deleteById(id);
     }
 
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid ReservationRequestDTO reservationRequestDTO)
+            throws SodaNotFoundException, SodaStockExceededException, ReservationsUnavailableException {
+        return reservationService.reserve(id, reservationRequestDTO);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public SodaDTO confirmReservation(@PathVariable UUID reservationId)
+            throws ReservationNotFoundException, SodaNotFoundException, ReservationsUnavailableException {
+        return reservationService.confirm(reservationId);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable UUID reservationId) throws ReservationNotFoundException {
+        reservationService.release(reservationId);
+    }
+
     @PatchMapping("/{id}/increment")
-    public SodaDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws SodaNotFoundException, SodaStockExceededException {
-        return sodaService.increment(id, quantityDTO.getQuantity());
+    public ResponseEntity<SodaDTO> increment(@PathVariable Long id,
+                             @RequestBody @Valid QuantityDTO quantityDTO,
+                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException {
+        return adjust("increment", id, quantityDTO, idempotencyKey,
+                () -> sodaService.tryIncrement(id, quantityDTO.getQuantity()),
+                () -> sodaService.increment(id, quantityDTO.getQuantity()));
     }
 
     @PatchMapping("/{id}/decrement")
-    public SodaDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws SodaNotFoundException, SodaStockExceededException{
-        return sodaService.decrement(id, quantityDTO.getQuantity());
+    public ResponseEntity<SodaDTO> decrement(@PathVariable Long id,
+                             @RequestBody @Valid QuantityDTO quantityDTO,
+                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException {
+        return adjust("decrement", id, quantityDTO, idempotencyKey,
+                () -> sodaService.tryDecrement(id, quantityDTO.getQuantity()),
+                () -> sodaService.decrement(id, quantityDTO.getQuantity()));
+    }
+
+    @PatchMapping("/stock")
+    public List<StockMovementResultDTO> adjustStock(@RequestBody @Valid StockMovementBatchDTO stockMovementBatchDTO) {
+        return sodaService.adjustStock(stockMovementBatchDTO.getMovements());
+    }
+
+    /**
+     * Requests without an Idempotency-Key take the non-throwing path through the service. Keyed requests go
+     * through the idempotency store, which shares failures with concurrent repeats as exceptions. Either way a
+     * failure leaves the controller as the same exception, so both paths get the same error response.
+     */
+    private ResponseEntity<SodaDTO> adjust(String operation, Long id, QuantityDTO quantityDTO, String idempotencyKey,
+                                           Supplier<SodaResultDTO> resultOperation, StockOperation stockOperation)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException {
+        if (idempotencyKey == null) {
+            return toResponse(resultOperation.get(), id, quantityDTO.getQuantity());
+        }
+        return ResponseEntity.ok(idempotencyStore.execute(idempotencyKey, fingerprint(operation, id, quantityDTO), stockOperation));
+    }
+
+    /**
+     * Turns a failed result into the exception the throwing path would have raised. Both exceptions skip their
+     * stack trace, so this costs an allocation and leaves the response to their {@code @ResponseStatus}.
+     */
+    private static ResponseEntity<SodaDTO> toResponse(SodaResultDTO result, Long id, int quantity)
+            throws SodaNotFoundException, SodaStockExceededException {
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                throw new SodaNotFoundException(id);
+            case STOCK_EXCEEDED:
+                throw new SodaStockExceededException(id, quantity);
+            default:
+                return ResponseEntity.ok(result.getSoda());
+        }
+    }
+
+    /**
+     * The media type content negotiation picks for a soda read. JSON is registered before the binary converter,
+     * so it wins unless the Accept header prefers the binary format.
+     */
+    private static MediaType representationOf(WebRequest webRequest) {
+        String accept = webRequest.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            if (acceptedType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (acceptedType.isCompatibleWith(SodaBinaryCodec.MEDIA_TYPE)) {
+                return SodaBinaryCodec.MEDIA_TYPE;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static String fingerprint(String operation, Long id, QuantityDTO quantityDTO) {
+        return operation + ":" + id + ":" + quantityDTO.getQuantity();
     }
 
 
@@ -4,12 +4,37 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.ReservationDTO;
+import one.digitalinnovation.sodastock.dto.ReservationRequestDTO;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportReportDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementBatchDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementResultDTO;
+import one.digitalinnovation.sodastock.dto.StockQuantityAtDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.InvalidImportFileException;
+import one.digitalinnovation.sodastock.exception.InvalidStockThresholdException;
+import one.digitalinnovation.sodastock.exception.ReservationNotFoundException;
+import one.digitalinnovation.sodastock.exception.ReservationsUnavailableException;
 import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
 import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 
 @Api("Manage soda stock.")
 public interface SodaControllerDocs {
@@ -23,19 +48,75 @@ public interface SodaControllerDocs {
 
 
 
+    @ApiOperation(value = "Imports sodas from a CSV file whose header names the columns name, max, quantity and size")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of imported and rejected rows, with the line and reason of each rejected row"),
+            @ApiResponse(code = 400, message = "CSV header without the required columns")
+    })
+    SodaImportReportDTO importCsv(InputStream body) throws IOException, InvalidImportFileException;
+
+    @ApiOperation(value = "Imports sodas from newline-delimited JSON, one soda per line")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of imported and rejected rows, with the line and reason of each rejected row")
+    })
+    SodaImportReportDTO importNdjson(InputStream body) throws IOException;
+
     @ApiOperation(value = "Returns soda found by a given name")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Success soda found in system"),
+            @ApiResponse(code = 200, message = "Success soda found in system, with an ETag per representation and Vary: Accept"),
+            @ApiResponse(code = 304, message = "Soda unchanged since the ETag given in If-None-Match"),
             @ApiResponse(code = 404, message = "Soda with given name not found")
     })
-    SodaDTO findByName(@PathVariable String name) throws SodaNotFoundException;
+    ResponseEntity<SodaDTO> findByName(@PathVariable String name, WebRequest webRequest, HttpServletResponse servletResponse)
+            throws SodaNotFoundException;
+
+    @ApiOperation(value = "Returns a page of sodas registered in the system, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of sodas, as JSON or in the compact binary format per the Accept header, with the cursor of the next page in the X-Next-Cursor header, an ETag per representation and Vary: Accept"),
+            @ApiResponse(code = 304, message = "Catalog unchanged since the ETag given in If-None-Match"),
+            @ApiResponse(code = 400, message = "Invalid page cursor")
+    })
+    ResponseEntity<List<SodaDTO>> listSodas(String cursor, int limit, SodaSize size, WebRequest webRequest,
+                                            HttpServletResponse servletResponse) throws InvalidCursorException;
+
+
+    @ApiOperation(value = "Returns the sodas whose quantity/max ratio is below or above a given threshold")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Sodas below the threshold from the emptiest, or above it from the fullest"),
+            @ApiResponse(code = 400, message = "Neither or both of the below and above thresholds informed")
+    })
+    List<SodaDTO> findByStockLevel(Double below, Double above, int limit) throws InvalidStockThresholdException;
+
+    @ApiOperation(value = "Returns the sodas whose name starts with or contains a query, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Names starting with the query first, then names containing it, answered from memory")
+    })
+    List<SodaDTO> searchByName(String q, int limit);
+
+    @ApiOperation(value = "Returns the number of sodas and the total units in stock of each soda size")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One aggregate per soda size, answered from memory")
+    })
+    List<SodaSizeAggregateDTO> aggregateBySize();
+
+    @ApiOperation(value = "Streams every soda registered in the system as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One soda per line, ordered by ID")
+    })
+    ResponseEntity<StreamingResponseBody> exportSodas(WebRequest webRequest);
 
-    @ApiOperation(value = "Returns a list of all sodas registered in the system")
+    @ApiOperation(value = "Streams soda creations, deletions and stock changes as Server-Sent Events")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "List of all sodas registered in the system")
+            @ApiResponse(code = 200, message = "One event per committed change, named after its type; a resync event when the client fell too far behind and should reload the catalog")
     })
-    List<SodaDTO> listSodas();
+    SseEmitter streamStockChanges(String lastEventId);
 
+    @ApiOperation(value = "Returns the stock of a soda found by a given ID at a given ISO-8601 instant, or now when omitted")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock of the soda at the given instant, rebuilt from the movement ledger"),
+            @ApiResponse(code = 404, message = "Soda with given ID had no stock at the given instant")
+    })
+    StockQuantityAtDTO quantityAt(Long id, Instant at) throws SodaNotFoundException;
 
     @ApiOperation(value = "Delete a soda found by a given valid ID")
     @ApiResponses(value = {
@@ -43,4 +124,56 @@ public interface SodaControllerDocs {
             @ApiResponse(code = 404, message = "Soda with given ID not found")
     })
     void deleteById(@PathVariable Long id) throws SodaNotFoundException;
+
+    @ApiOperation(value = "Holds a quantity of a soda for a while, without changing its quantity")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Reservation placed, with the instant it expires at"),
+            @ApiResponse(code = 400, message = "Quantity not available, after the other reservations"),
+            @ApiResponse(code = 404, message = "Soda with given ID not found"),
+            @ApiResponse(code = 409, message = "Reservations unavailable in the write-behind stock mode")
+    })
+    ReservationDTO reserve(@PathVariable Long id, ReservationRequestDTO reservationRequestDTO)
+            throws SodaNotFoundException, SodaStockExceededException, ReservationsUnavailableException;
+
+    @ApiOperation(value = "Confirms a reservation, decrementing the soda by the held quantity")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Reservation confirmed, with the decremented soda"),
+            @ApiResponse(code = 404, message = "Reservation not found, already confirmed, released or expired")
+    })
+    SodaDTO confirmReservation(@PathVariable UUID reservationId)
+            throws ReservationNotFoundException, SodaNotFoundException, ReservationsUnavailableException;
+
+    @ApiOperation(value = "Releases a reservation, giving the held quantity back")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Reservation released"),
+            @ApiResponse(code = 404, message = "Reservation not found, already confirmed, released or expired")
+    })
+    void releaseReservation(@PathVariable UUID reservationId) throws ReservationNotFoundException;
+
+    @ApiOperation(value = "Increments the stock of a soda found by a given ID, with the quantity as JSON or in the compact binary format. Repeats with the same Idempotency-Key return the first result")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Soda with its incremented stock, as JSON or in the binary format per the Accept header"),
+            @ApiResponse(code = 400, message = "Malformed or out of range quantity, or increment exceeds the soda max stock"),
+            @ApiResponse(code = 404, message = "Soda with given ID not found"),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request")
+    })
+    ResponseEntity<SodaDTO> increment(Long id, QuantityDTO quantityDTO, String idempotencyKey)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException;
+
+    @ApiOperation(value = "Decrements the stock of a soda found by a given ID, with the quantity as JSON or in the compact binary format. Repeats with the same Idempotency-Key return the first result")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Soda with its decremented stock, as JSON or in the binary format per the Accept header"),
+            @ApiResponse(code = 400, message = "Malformed or out of range quantity, or decrement is greater than the soda stock"),
+            @ApiResponse(code = 404, message = "Soda with given ID not found"),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request")
+    })
+    ResponseEntity<SodaDTO> decrement(Long id, QuantityDTO quantityDTO, String idempotencyKey)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException;
+
+    @ApiOperation(value = "Applies a batch of stock movements in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Result of each stock movement, in the given order, with the quantity right after it"),
+            @ApiResponse(code = 400, message = "Empty batch or movement with missing id, zero delta or wrong delta range value")
+    })
+    List<StockMovementResultDTO> adjustStock(StockMovementBatchDTO stockMovementBatchDTO);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDTO {
+
+    private UUID id;
+
+    private Long sodaId;
+
+    private Integer quantity;
+
+    private Instant expiresAt;
+
+}
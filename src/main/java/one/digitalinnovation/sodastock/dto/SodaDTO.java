@@ -10,6 +10,7 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
 @Data
@@ -21,8 +22,12 @@ public class SodaDTO {
     private Long id;
 
 
+    /**
+     * Names equal to a literal path under /api/v1/sodas would never be reached by GET /{name}, so they are rejected.
+     */
     @Size(min = 1, max = 200)
     @NotNull
+    @Pattern(regexp = "(?!(stock-levels|search|aggregates|export|stream)$).*", message = "is reserved for an API path")
     private String name;
 
 
@@ -0,0 +1,20 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SodaImportErrorDTO {
+
+    private Long line;
+
+    private String name;
+
+    private String message;
+
+}
@@ -0,0 +1,24 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SodaImportReportDTO {
+
+    private long imported;
+
+    private long rejected;
+
+    @Builder.Default
+    private List<SodaImportErrorDTO> errors = new ArrayList<>();
+
+}
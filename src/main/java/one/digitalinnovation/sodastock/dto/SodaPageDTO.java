@@ -0,0 +1,20 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SodaPageDTO {
+
+    private List<SodaDTO> sodas;
+
+    private String nextCursor;
+
+}
@@ -0,0 +1,40 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import one.digitalinnovation.sodastock.enums.SodaResultStatus;
+
+/**
+ * Outcome of a soda lookup or stock change returned instead of thrown, for callers that treat a missing soda
+ * or a full stock as an ordinary answer. The soda is only set when the status is {@link SodaResultStatus#OK}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SodaResultDTO {
+
+    private static final SodaResultDTO NOT_FOUND = new SodaResultDTO(SodaResultStatus.NOT_FOUND, null);
+    private static final SodaResultDTO STOCK_EXCEEDED = new SodaResultDTO(SodaResultStatus.STOCK_EXCEEDED, null);
+
+    private final SodaResultStatus status;
+
+    private final SodaDTO soda;
+
+    public static SodaResultDTO ok(SodaDTO soda) {
+        return new SodaResultDTO(SodaResultStatus.OK, soda);
+    }
+
+    public static SodaResultDTO notFound() {
+        return NOT_FOUND;
+    }
+
+    public static SodaResultDTO stockExceeded() {
+        return STOCK_EXCEEDED;
+    }
+
+    public boolean isOk() {
+        return status == SodaResultStatus.OK;
+    }
+}
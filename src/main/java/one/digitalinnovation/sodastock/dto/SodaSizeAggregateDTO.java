@@ -0,0 +1,21 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SodaSizeAggregateDTO {
+
+    private SodaSize size;
+
+    private Long skus;
+
+    private Long units;
+
+}
@@ -0,0 +1,21 @@
+package one.digitalinnovation.sodastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChangeDTO {
+
+    private SodaChangeType type;
+
+    private Integer delta;
+
+    private SodaDTO soda;
+
+}
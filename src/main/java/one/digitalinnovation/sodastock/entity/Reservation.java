@@ -0,0 +1,40 @@
+package one.digitalinnovation.sodastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_reservation_expires_at", columnList = "expires_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class Reservation implements Persistable<UUID> {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "soda_id", nullable = false)
+    private Long sodaId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Holds are only ever inserted and deleted, so saving one never needs to look for an existing row.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+}
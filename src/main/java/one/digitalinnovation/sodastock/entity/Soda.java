@@ -15,7 +15,8 @@ import javax.persistence.*;
 public class Soda {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "soda_id_seq")
+    @SequenceGenerator(name = "soda_id_seq", sequenceName = "soda_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -27,8 +28,14 @@ public class Soda {
     @Column(nullable = false)
     private int quantity;
 
+    @Column(nullable = false)
+    private int reserved;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private SodaSize size;
 
+    @Version
+    private Long version;
+
 }
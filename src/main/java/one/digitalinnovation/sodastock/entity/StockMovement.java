@@ -0,0 +1,40 @@
+package one.digitalinnovation.sodastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+
+@Data
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_stock_movement_soda_id_id", columnList = "soda_id, id"),
+        @Index(name = "idx_stock_movement_generation", columnList = "generation")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "soda_id", nullable = false)
+    private Long sodaId;
+
+    @Column(nullable = false)
+    private int delta;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /**
+     * Snapshot generation that folded this movement, null until a snapshot claims it.
+     */
+    @Column(name = "generation")
+    private Long generation;
+
+}
@@ -0,0 +1,37 @@
+package one.digitalinnovation.sodastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+
+@Data
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_stock_snapshot_soda_id_taken_at", columnList = "soda_id, taken_at"),
+        @Index(name = "idx_stock_snapshot_generation", columnList = "generation")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_stock_snapshot_soda_id_generation", columnNames = {"soda_id", "generation"}))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "soda_id", nullable = false)
+    private Long sodaId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "generation", nullable = false)
+    private Long generation;
+
+    @Column(name = "taken_at", nullable = false)
+    private Instant takenAt;
+
+}
@@ -0,0 +1,9 @@
+package one.digitalinnovation.sodastock.enums;
+
+public enum SodaChangeType {
+
+    CREATED,
+    STOCK_CHANGED,
+    DELETED
+
+}
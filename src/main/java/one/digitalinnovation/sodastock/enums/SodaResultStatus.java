@@ -0,0 +1,9 @@
+package one.digitalinnovation.sodastock.enums;
+
+public enum SodaResultStatus {
+
+    OK,
+    NOT_FOUND,
+    STOCK_EXCEEDED
+
+}
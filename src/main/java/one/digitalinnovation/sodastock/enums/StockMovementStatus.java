@@ -0,0 +1,9 @@
+package one.digitalinnovation.sodastock.enums;
+
+public enum StockMovementStatus {
+
+    APPLIED,
+    STOCK_EXCEEDED,
+    NOT_FOUND
+
+}
@@ -0,0 +1,24 @@
+package one.digitalinnovation.sodastock.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+
+/**
+ * Published by {@link one.digitalinnovation.sodastock.service.SodaService} for every write on a soda.
+ * The soda holds its state after the write (before it, for a deletion) and the delta is the change in stock units.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SodaChangedEvent {
+
+    private final SodaChangeType type;
+
+    private final SodaDTO soda;
+
+    private final int delta;
+
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.sodastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportFileException extends Exception {
+
+    public InvalidImportFileException(String reason) {
+        super(String.format("Import file is not valid: %s.", reason));
+    }
+}
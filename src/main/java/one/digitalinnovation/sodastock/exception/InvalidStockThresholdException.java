@@ -0,0 +1,12 @@
+package one.digitalinnovation.sodastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidStockThresholdException extends Exception {
+
+    public InvalidStockThresholdException() {
+        super("Exactly one of the below or above stock thresholds must be informed, as a ratio of quantity to max.");
+    }
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.sodastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ReservationsUnavailableException extends Exception {
+
+    public ReservationsUnavailableException() {
+        super("Stock reservations are not available while the write-behind stock mode is enabled.");
+    }
+}
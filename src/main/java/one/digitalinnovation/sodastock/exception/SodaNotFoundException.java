@@ -3,14 +3,33 @@ package one.digitalinnovation.sodastock.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Expected outcome of a lookup for a missing soda, so it carries no stack trace and only formats its message
+ * when the message is read.
+ */
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class SodaNotFoundException extends Exception {
 
+    private final String field;
+
+    private final Object value;
+
     public SodaNotFoundException (String name) {
-        super(String.format("Soda with name %s not found in system.", name));
+        this("name", name);
     }
 
     public SodaNotFoundException (Long id) {
-        super(String.format("Soda with id %s not found in system.", id));
+        this("id", id);
+    }
+
+    private SodaNotFoundException(String field, Object value) {
+        super(null, null, false, false);
+        this.field = field;
+        this.value = value;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format("Soda with %s %s not found in system.", field, value);
     }
 }
@@ -4,10 +4,25 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 
+/**
+ * Expected outcome of a stock change past the soda's capacity, so it carries no stack trace and only formats
+ * its message when the message is read.
+ */
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class SodaStockExceededException extends Exception {
 
+    private final Long id;
+
+    private final int quantityToIncrement;
+
     public SodaStockExceededException(Long id, int quantityToIncrement) {
-        super(String.format("Sodas with %s ID to increment informed exceeds the stock capacity: %s", id, quantityToIncrement));
+        super(null, null, false, false);
+        this.id = id;
+        this.quantityToIncrement = quantityToIncrement;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format("Sodas with %s ID to increment informed exceeds the stock capacity: %s", id, quantityToIncrement);
     }
 }
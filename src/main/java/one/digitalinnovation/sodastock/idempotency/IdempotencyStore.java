@@ -0,0 +1,106 @@
+package one.digitalinnovation.sodastock.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded, time-expiring store of stock operation results keyed by the client's Idempotency-Key. The first
+ * request with a key runs the operation; any repeat, including one that arrives while the first is still
+ * running, gets the first result back without running it again. Failed operations are forgotten, so a retry
+ * after a failure runs again. Lookups are timed as "sodastock.idempotency.lookup" and the store is published
+ * as the "idempotency" cache metrics.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final String CACHE_NAME = "idempotency";
+
+    private final Cache<String, StoredResult> resultsByKey;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+
+    public IdempotencyStore(@Value("${sodastock.idempotency.maximum-size}") long maximumSize,
+                            @Value("${sodastock.idempotency.expire-after-write}") Duration expireAfterWrite,
+                            MeterRegistry meterRegistry) {
+        this.resultsByKey = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resultsByKey, CACHE_NAME);
+        this.hitTimer = meterRegistry.timer("sodastock.idempotency.lookup", "result", "hit");
+        this.missTimer = meterRegistry.timer("sodastock.idempotency.lookup", "result", "miss");
+    }
+
+    public SodaDTO execute(String idempotencyKey, String fingerprint, StockOperation operation)
+            throws SodaNotFoundException, SodaStockExceededException, IdempotencyKeyReusedException {
+        long lookupStart = System.nanoTime();
+        StoredResult ownResult = new StoredResult(fingerprint, new CompletableFuture<>());
+        StoredResult storedResult = resultsByKey.asMap().putIfAbsent(idempotencyKey, ownResult);
+        long lookupNanos = System.nanoTime() - lookupStart;
+
+        if (storedResult == null) {
+            missTimer.record(Duration.ofNanos(lookupNanos));
+            return runAndStore(idempotencyKey, ownResult, operation);
+        }
+
+        hitTimer.record(Duration.ofNanos(lookupNanos));
+        if (!storedResult.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException(idempotencyKey);
+        }
+        return awaitResult(storedResult);
+    }
+
+    private SodaDTO runAndStore(String idempotencyKey, StoredResult ownResult, StockOperation operation)
+            throws SodaNotFoundException, SodaStockExceededException {
+        try {
+            SodaDTO sodaDTO = operation.execute();
+            ownResult.getResult().complete(sodaDTO);
+            return sodaDTO;
+        } catch (SodaNotFoundException | SodaStockExceededException | RuntimeException e) {
+            resultsByKey.asMap().remove(idempotencyKey, ownResult);
+            ownResult.getResult().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private SodaDTO awaitResult(StoredResult storedResult) throws SodaNotFoundException, SodaStockExceededException {
+        try {
+            return storedResult.getResult().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SodaNotFoundException) {
+                throw (SodaNotFoundException) cause;
+            } else if (cause instanceof SodaStockExceededException) {
+                throw (SodaStockExceededException) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class StoredResult {
+
+        private final String fingerprint;
+        private final CompletableFuture<SodaDTO> result;
+    }
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.sodastock.idempotency;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+
+@FunctionalInterface
+public interface StockOperation {
+
+    SodaDTO execute() throws SodaNotFoundException, SodaStockExceededException;
+
+}
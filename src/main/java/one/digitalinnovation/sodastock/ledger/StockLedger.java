@@ -0,0 +1,83 @@
+package one.digitalinnovation.sodastock.ledger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import one.digitalinnovation.sodastock.repository.StockMovementRepository;
+import one.digitalinnovation.sodastock.repository.StockSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only ledger of stock movements. Every stock write records its signed movements in the transaction
+ * that changes the soda table, so the ledger holds exactly the committed changes, crash or not. Every snapshot
+ * interval the movements no snapshot folded yet are folded into per-soda snapshots, so a quantity at any point
+ * in time is one snapshot plus the few movements after it.
+ */
+@Component
+public class StockLedger {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final Clock clock;
+    private final Counter appendedMovements;
+    private final Counter takenSnapshots;
+
+    @Autowired
+    public StockLedger(StockMovementRepository stockMovementRepository,
+                       StockSnapshotRepository stockSnapshotRepository,
+                       MeterRegistry meterRegistry) {
+        this(stockMovementRepository, stockSnapshotRepository, meterRegistry, Clock.systemUTC());
+    }
+
+    StockLedger(StockMovementRepository stockMovementRepository,
+                StockSnapshotRepository stockSnapshotRepository,
+                MeterRegistry meterRegistry,
+                Clock clock) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.clock = clock;
+        this.appendedMovements = meterRegistry.counter("sodastock.ledger.appended");
+        this.takenSnapshots = meterRegistry.counter("sodastock.ledger.snapshots");
+    }
+
+    /**
+     * Records a movement of the stock of a soda. Must run in the transaction of the write that moved it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long sodaId, int delta) {
+        recordAll(Collections.singletonList(new StockMovementDTO(sodaId, delta)));
+    }
+
+    /**
+     * Records movements of the stock of sodas, in order. Must run in the transaction of the write that moved them.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(List<StockMovementDTO> movements) {
+        Instant now = clock.instant();
+        List<StockMovement> stockMovements = movements.stream()
+                .filter(movement -> movement.getDelta() != 0)
+                .map(movement -> new StockMovement(null, movement.getId(), movement.getDelta(), now, null))
+                .collect(Collectors.toList());
+        if (stockMovements.isEmpty()) {
+            return;
+        }
+        stockMovementRepository.appendAll(stockMovements);
+        appendedMovements.increment(stockMovements.size());
+    }
+
+    @Scheduled(fixedDelayString = "${sodastock.ledger.snapshot-interval}")
+    public void snapshot() {
+        takenSnapshots.increment(stockSnapshotRepository.takeSnapshots());
+    }
+}
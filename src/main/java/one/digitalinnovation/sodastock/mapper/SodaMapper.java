@@ -3,6 +3,7 @@ package one.digitalinnovation.sodastock.mapper;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
 import one.digitalinnovation.sodastock.entity.Soda;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -10,6 +11,8 @@ public interface SodaMapper {
 
     SodaMapper INSTANCE = Mappers.getMapper(SodaMapper.class);
 
+    @Mapping(target = "reserved", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Soda toModel(SodaDTO sodaDTO);
 
     SodaDTO toDTO(Soda soda);
@@ -0,0 +1,115 @@
+package one.digitalinnovation.sodastock.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call into the controllers, services and the soda repository as "sodastock.calls", tagged with
+ * the layer, the method and how the call ended. Percentiles and histogram buckets are configured through the
+ * management.metrics.distribution properties. Calls answering with a {@link SodaResultDTO} are tagged with its
+ * status, so they are counted like the exceptions they replace. Each timer is looked up once per layer, class,
+ * method and outcome and then reused, so a call only pays for a map lookup.
+ */
+@Aspect
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class SodaMetricsAspect {
+
+    static final String CALLS_METRIC = "sodastock.calls";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    @Around("within(one.digitalinnovation.sodastock.controller..*)")
+    public Object timeController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "controller", joinPoint.getTarget().getClass().getSimpleName());
+    }
+
+    @Around("within(one.digitalinnovation.sodastock.service..*)")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "service", joinPoint.getTarget().getClass().getSimpleName());
+    }
+
+    @Around("this(one.digitalinnovation.sodastock.repository.SodaRepository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "repository", SodaRepository.class.getSimpleName());
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String layer, String className) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof SodaResultDTO) {
+                outcome = outcomeOf((SodaResultDTO) result);
+            }
+            return result;
+        } catch (Throwable throwable) {
+            outcome = outcomeOf(throwable);
+            throw throwable;
+        } finally {
+            sample.stop(timerOf(new TimerKey(layer, className, joinPoint.getSignature().getName(), outcome)));
+        }
+    }
+
+    private Timer timerOf(TimerKey key) {
+        Timer timer = timers.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(key, missingKey -> Timer.builder(CALLS_METRIC)
+                .tag("layer", missingKey.getLayer())
+                .tag("class", missingKey.getClassName())
+                .tag("method", missingKey.getMethod())
+                .tag("outcome", missingKey.getOutcome())
+                .register(meterRegistry));
+    }
+
+    private static String outcomeOf(SodaResultDTO result) {
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                return "not_found";
+            case STOCK_EXCEEDED:
+                return "stock_exceeded";
+            default:
+                return "success";
+        }
+    }
+
+    private static String outcomeOf(Throwable throwable) {
+        if (throwable instanceof SodaNotFoundException) {
+            return "not_found";
+        } else if (throwable instanceof SodaStockExceededException) {
+            return "stock_exceeded";
+        } else if (throwable instanceof SodaAlreadyRegisteredException) {
+            return "already_registered";
+        } else if (throwable instanceof InvalidCursorException) {
+            return "invalid_cursor";
+        }
+        return "error";
+    }
+
+    @Value
+    private static class TimerKey {
+        String layer;
+        String className;
+        String method;
+        String outcome;
+    }
+}
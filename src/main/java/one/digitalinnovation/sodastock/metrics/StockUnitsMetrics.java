@@ -0,0 +1,44 @@
+package one.digitalinnovation.sodastock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Counts the units moved in and out of stock once each change has committed, as "sodastock.stock.units"
+ * tagged with the direction.
+ */
+@Component
+public class StockUnitsMetrics {
+
+    static final String UNITS_METRIC = "sodastock.stock.units";
+
+    private final Counter incrementedUnits;
+    private final Counter decrementedUnits;
+
+    public StockUnitsMetrics(MeterRegistry meterRegistry) {
+        this.incrementedUnits = Counter.builder(UNITS_METRIC)
+                .tag("direction", "increment")
+                .baseUnit("units")
+                .register(meterRegistry);
+        this.decrementedUnits = Counter.builder(UNITS_METRIC)
+                .tag("direction", "decrement")
+                .baseUnit("units")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        if (event.getType() != SodaChangeType.STOCK_CHANGED) {
+            return;
+        }
+        if (event.getDelta() > 0) {
+            incrementedUnits.increment(event.getDelta());
+        } else if (event.getDelta() < 0) {
+            decrementedUnits.increment(-event.getDelta());
+        }
+    }
+}
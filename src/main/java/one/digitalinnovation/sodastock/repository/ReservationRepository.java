@@ -0,0 +1,28 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.entity.Reservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface ReservationRepository extends JpaRepository<Reservation, UUID> {
+
+    List<Reservation> findByExpiresAtLessThanEqualOrderByExpiresAt(Instant at, Pageable pageable);
+
+    /**
+     * Deletes a hold and returns 1 to the single caller that got it, so confirming, releasing and expiring the
+     * same hold on any number of instances settle it exactly once.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Reservation r where r.id = :id")
+    int claim(@Param("id") UUID id);
+
+}
@@ -1,12 +1,94 @@
 package one.digitalinnovation.sodastock.repository;
 
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
 import one.digitalinnovation.sodastock.entity.Soda;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface SodaRepository extends JpaRepository<Soda, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface SodaRepository extends JpaRepository<Soda, Long>, SodaRepositoryCustom {
+
+    String SODA_DTO_PROJECTION = "new one.digitalinnovation.sodastock.dto.SodaDTO(s.id, s.name, s.max, s.quantity, s.size)";
 
     Optional<Soda> findByName(String name);
 
-}
\ No newline at end of file
+    @Transactional(readOnly = true)
+    @Query("select " + SODA_DTO_PROJECTION + " from Soda s where s.name = :name")
+    Optional<SodaDTO> findDTOByName(@Param("name") String name);
+
+    @Query("select s.name from Soda s where s.name in :names")
+    Set<String> findNamesByNameIn(@Param("names") Collection<String> names);
+
+    @Transactional(readOnly = true)
+    @Query("select " + SODA_DTO_PROJECTION + " from Soda s where s.id > :id order by s.id")
+    List<SodaDTO> findDTOsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select s from Soda s order by s.id")
+    Stream<Soda> streamAllByOrderById();
+
+    @Query("select new one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO(s.size, count(s), coalesce(sum(s.quantity), 0)) from Soda s group by s.size")
+    List<SodaSizeAggregateDTO> aggregateBySize();
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Soda s set s.quantity = s.quantity + :quantity, s.version = s.version + 1 where s.id = :id and s.quantity + :quantity between s.reserved and s.max")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantityToIncrement);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Soda s set s.quantity = s.quantity - :quantity, s.version = s.version + 1 where s.id = :id and s.quantity - :quantity between s.reserved and s.max")
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantityToDecrement);
+
+    /**
+     * Runs the bounded increment and reads the changed row back in the same transaction. The update keeps the
+     * row locked until commit, so the returned soda holds exactly this change. Empty when nothing was updated.
+     */
+    @Transactional
+    default Optional<Soda> incrementAndGet(Long id, int quantityToIncrement) {
+        return incrementQuantity(id, quantityToIncrement) == 0 ? Optional.empty() : findCurrentById(id);
+    }
+
+    /**
+     * Runs the bounded decrement and reads the changed row back in the same transaction, like
+     * {@link #incrementAndGet(Long, int)}.
+     */
+    @Transactional
+    default Optional<Soda> decrementAndGet(Long id, int quantityToDecrement) {
+        return decrementQuantity(id, quantityToDecrement) == 0 ? Optional.empty() : findCurrentById(id);
+    }
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Soda s set s.reserved = s.reserved + :quantity, s.version = s.version + 1 where s.id = :id and s.quantity - s.reserved >= :quantity")
+    int reserveQuantity(@Param("id") Long id, @Param("quantity") int quantityToReserve);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Soda s set s.reserved = s.reserved - :quantity, s.version = s.version + 1 where s.id = :id and s.reserved >= :quantity")
+    int releaseReservedQuantity(@Param("id") Long id, @Param("quantity") int quantityToRelease);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Soda s set s.quantity = s.quantity - :quantity, s.reserved = s.reserved - :quantity, s.version = s.version + 1 where s.id = :id and s.reserved >= :quantity")
+    int confirmReservedQuantity(@Param("id") Long id, @Param("quantity") int quantityToConfirm);
+
+}
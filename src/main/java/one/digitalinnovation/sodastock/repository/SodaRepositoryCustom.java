@@ -0,0 +1,29 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SodaRepositoryCustom {
+
+    /**
+     * Applies every movement as one bounded update inside a single JDBC batch and transaction.
+     * Returns the update count of each movement, in the same order.
+     */
+    int[] adjustQuantities(List<StockMovementDTO> movements);
+
+    /**
+     * Reads the committed row of a soda straight from the database, bypassing the persistence context,
+     * so repeated reads within one request see every concurrent change.
+     */
+    Optional<Soda> findCurrentById(Long id);
+
+    /**
+     * Sets the quantity of a soda only if its version is still the expected one, bumping the version.
+     * Returns the number of updated rows, zero when the soda changed or disappeared in between.
+     */
+    int compareAndSetQuantity(Long id, long expectedVersion, int quantity);
+
+}
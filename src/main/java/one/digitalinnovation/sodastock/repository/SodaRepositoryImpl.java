@@ -0,0 +1,56 @@
+package one.digitalinnovation.sodastock.repository;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class SodaRepositoryImpl implements SodaRepositoryCustom {
+
+    private static final String ADJUST_QUANTITY_SQL =
+            "UPDATE soda SET quantity = quantity + ?, version = version + 1 WHERE id = ? AND quantity + ? BETWEEN reserved AND max";
+    private static final String SELECT_CURRENT_SQL = "SELECT id, name, max, quantity, reserved, size, version FROM soda WHERE id = ?";
+    private static final String COMPARE_AND_SET_QUANTITY_SQL =
+            "UPDATE soda SET quantity = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int[] adjustQuantities(List<StockMovementDTO> movements) {
+        int[][] updatedRows = jdbcTemplate.batchUpdate(ADJUST_QUANTITY_SQL, movements, movements.size(), (ps, movement) -> {
+            ps.setInt(1, movement.getDelta());
+            ps.setLong(2, movement.getId());
+            ps.setInt(3, movement.getDelta());
+        });
+        entityManager.clear();
+        return updatedRows.length == 0 ? new int[0] : updatedRows[0];
+    }
+
+    @Override
+    public Optional<Soda> findCurrentById(Long id) {
+        List<Soda> sodas = jdbcTemplate.query(SELECT_CURRENT_SQL, (rs, rowNum) -> new Soda(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getInt("max"),
+                rs.getInt("quantity"),
+                rs.getInt("reserved"),
+                SodaSize.valueOf(rs.getString("size")),
+                rs.getLong("version")), id);
+        return sodas.stream().findFirst();
+    }
+
+    @Override
+    public int compareAndSetQuantity(Long id, long expectedVersion, int quantity) {
+        return jdbcTemplate.update(COMPARE_AND_SET_QUANTITY_SQL, quantity, id, expectedVersion);
+    }
+}
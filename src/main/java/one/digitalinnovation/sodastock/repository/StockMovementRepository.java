@@ -0,0 +1,19 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
+
+    Optional<StockMovement> findFirstBySodaIdOrderByIdAsc(Long sodaId);
+
+    @Query("select coalesce(sum(m.delta), 0) from StockMovement m where m.sodaId = :sodaId "
+            + "and (m.generation is null or m.generation > :afterGeneration) and m.createdAt <= :at")
+    long sumDeltas(@Param("sodaId") Long sodaId, @Param("afterGeneration") long afterGeneration, @Param("at") Instant at);
+
+}
@@ -0,0 +1,14 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.entity.StockMovement;
+
+import java.util.List;
+
+public interface StockMovementRepositoryCustom {
+
+    /**
+     * Appends every movement to the ledger inside a single JDBC batch.
+     */
+    void appendAll(List<StockMovement> movements);
+
+}
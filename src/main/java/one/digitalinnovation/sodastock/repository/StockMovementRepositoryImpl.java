@@ -0,0 +1,26 @@
+package one.digitalinnovation.sodastock.repository;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockMovementRepositoryImpl implements StockMovementRepositoryCustom {
+
+    private static final String APPEND_MOVEMENT_SQL = "INSERT INTO stock_movement (soda_id, delta, created_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<StockMovement> movements) {
+        jdbcTemplate.batchUpdate(APPEND_MOVEMENT_SQL, movements, movements.size(), (ps, movement) -> {
+            ps.setLong(1, movement.getSodaId());
+            ps.setInt(2, movement.getDelta());
+            ps.setTimestamp(3, Timestamp.from(movement.getCreatedAt()));
+        });
+    }
+}
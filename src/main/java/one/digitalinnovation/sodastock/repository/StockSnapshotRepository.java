@@ -0,0 +1,13 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long>, StockSnapshotRepositoryCustom {
+
+    Optional<StockSnapshot> findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(Long sodaId, Instant at);
+
+}
@@ -0,0 +1,12 @@
+package one.digitalinnovation.sodastock.repository;
+
+public interface StockSnapshotRepositoryCustom {
+
+    /**
+     * Claims every committed movement no snapshot folded yet for a new generation and folds them into a new
+     * snapshot of every soda they touched. Movements are claimed by their generation rather than by id, so one
+     * that commits after a later id was folded is still picked up. Returns the number of snapshots taken.
+     */
+    int takeSnapshots();
+
+}
@@ -0,0 +1,64 @@
+package one.digitalinnovation.sodastock.repository;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.entity.StockSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockSnapshotRepositoryImpl implements StockSnapshotRepositoryCustom {
+
+    private static final String LAST_GENERATION_SQL = "SELECT COALESCE(MAX(generation), 0) FROM stock_snapshot";
+    private static final String CLAIM_MOVEMENTS_SQL = "UPDATE stock_movement SET generation = ? WHERE generation IS NULL";
+    private static final String FOLD_MOVEMENTS_SQL =
+            "SELECT m.soda_id, SUM(m.delta) AS delta, MAX(m.created_at) AS last_created_at, "
+                    + "COALESCE((SELECT s.quantity FROM stock_snapshot s WHERE s.soda_id = m.soda_id "
+                    + "ORDER BY s.generation DESC LIMIT 1), 0) AS previous_quantity, "
+                    + "(SELECT MAX(s.taken_at) FROM stock_snapshot s WHERE s.soda_id = m.soda_id) AS previous_taken_at "
+                    + "FROM stock_movement m WHERE m.generation = ? GROUP BY m.soda_id";
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO stock_snapshot (soda_id, quantity, generation, taken_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public int takeSnapshots() {
+        long generation = jdbcTemplate.queryForObject(LAST_GENERATION_SQL, Long.class) + 1;
+        if (jdbcTemplate.update(CLAIM_MOVEMENTS_SQL, generation) == 0) {
+            return 0;
+        }
+
+        List<StockSnapshot> snapshots = jdbcTemplate.query(FOLD_MOVEMENTS_SQL, (rs, rowNum) -> new StockSnapshot(
+                null,
+                rs.getLong("soda_id"),
+                rs.getInt("previous_quantity") + rs.getInt("delta"),
+                generation,
+                latestOf(rs.getTimestamp("last_created_at"), rs.getTimestamp("previous_taken_at"))), generation);
+
+        jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, snapshots, snapshots.size(), (ps, snapshot) -> {
+            ps.setLong(1, snapshot.getSodaId());
+            ps.setInt(2, snapshot.getQuantity());
+            ps.setLong(3, snapshot.getGeneration());
+            ps.setTimestamp(4, Timestamp.from(snapshot.getTakenAt()));
+        });
+        return snapshots.size();
+    }
+
+    /**
+     * A movement that committed late may be older than the previous snapshot; the new snapshot never goes
+     * back in time, so it still covers every movement of the generations before it.
+     */
+    private static Instant latestOf(Timestamp lastCreatedAt, Timestamp previousTakenAt) {
+        Instant takenAt = lastCreatedAt.toInstant();
+        if (previousTakenAt != null && previousTakenAt.toInstant().isAfter(takenAt)) {
+            return previousTakenAt.toInstant();
+        }
+        return takenAt;
+    }
+}
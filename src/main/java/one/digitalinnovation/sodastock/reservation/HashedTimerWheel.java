@@ -0,0 +1,118 @@
+package one.digitalinnovation.sodastock.reservation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timer wheel: a ring of buckets, one per tick, where a timeout is dropped into the bucket of the
+ * tick it expires on. Scheduling and cancelling are O(1) whatever the number of pending timeouts, and each
+ * tick only looks at its own bucket, where timeouts due on a later turn of the wheel simply stay behind.
+ * Any thread may schedule or cancel; new timeouts are handed over through a queue and placed in their
+ * bucket by the single thread that advances the wheel, which also runs the expired tasks.
+ */
+@Slf4j
+public class HashedTimerWheel {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final Queue<Timeout>[] buckets;
+    private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+    private long nextTick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        int size = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Schedules a task to run on the first tick at or after the given deadline.
+     */
+    public Timeout schedule(Runnable task, long deadlineMillis) {
+        long deadlineTick = Math.max(0L, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        Timeout timeout = new Timeout(task, deadlineTick);
+        scheduledTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Processes every tick up to the given time, running the tasks that expired on the calling thread.
+     * Returns the number of tasks run.
+     */
+    public synchronized int advance(long nowMillis) {
+        long currentTick = (nowMillis - startMillis) / tickMillis;
+        int expired = 0;
+        for (; nextTick <= currentTick; nextTick++) {
+            placeScheduledTimeouts();
+            expired += expire(buckets[(int) (nextTick & mask)]);
+        }
+        return expired;
+    }
+
+    private void placeScheduledTimeouts() {
+        Timeout timeout;
+        while ((timeout = scheduledTimeouts.poll()) != null) {
+            if (!timeout.cancelled) {
+                timeout.deadlineTick = Math.max(timeout.deadlineTick, nextTick);
+                buckets[(int) (timeout.deadlineTick & mask)].add(timeout);
+            }
+        }
+    }
+
+    private int expire(Queue<Timeout> bucket) {
+        int expired = 0;
+        Iterator<Timeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout timeout = timeouts.next();
+            if (timeout.cancelled) {
+                timeouts.remove();
+            } else if (timeout.deadlineTick <= nextTick) {
+                timeouts.remove();
+                expired++;
+                run(timeout);
+            }
+        }
+        return expired;
+    }
+
+    private static void run(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) {
+            log.error("Timeout task failed", e);
+        }
+    }
+
+    public static final class Timeout {
+
+        private final Runnable task;
+        private long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Keeps the task from running; the timeout leaves its bucket the next time the wheel passes by.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
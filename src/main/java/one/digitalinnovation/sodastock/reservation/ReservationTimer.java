@@ -0,0 +1,43 @@
+package one.digitalinnovation.sodastock.reservation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Clock and expiry timer of the stock reservations, a {@link HashedTimerWheel} advanced every tick interval.
+ */
+@Component
+public class ReservationTimer {
+
+    private final Clock clock;
+    private final HashedTimerWheel timerWheel;
+
+    @Autowired
+    public ReservationTimer(@Value("${sodastock.reservation.tick-interval}") long tickMillis,
+                            @Value("${sodastock.reservation.wheel-size}") int wheelSize) {
+        this(tickMillis, wheelSize, Clock.systemUTC());
+    }
+
+    ReservationTimer(long tickMillis, int wheelSize, Clock clock) {
+        this.clock = clock;
+        this.timerWheel = new HashedTimerWheel(tickMillis, wheelSize, clock.millis());
+    }
+
+    public Instant now() {
+        return clock.instant();
+    }
+
+    public HashedTimerWheel.Timeout schedule(Runnable task, Instant deadline) {
+        return timerWheel.schedule(task, deadline.toEpochMilli());
+    }
+
+    @Scheduled(fixedDelayString = "${sodastock.reservation.tick-interval}")
+    public void tick() {
+        timerWheel.advance(clock.millis());
+    }
+}
@@ -0,0 +1,97 @@
+package one.digitalinnovation.sodastock.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a unit of work in its own transaction and, when it loses an optimistic lock race on a soda version,
+ * runs it again in a fresh transaction after a randomized exponential backoff. Gives up after a bounded
+ * number of attempts by rethrowing the last conflict. Conflicts and retries are counted as
+ * "sodastock.optimistic-lock.conflicts" and "sodastock.optimistic-lock.retries", tagged with the operation.
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    @Autowired
+    public OptimisticLockRetry(PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${sodastock.optimistic-lock.max-attempts}") int maxAttempts,
+                               @Value("${sodastock.optimistic-lock.initial-backoff}") Duration initialBackoff,
+                               @Value("${sodastock.optimistic-lock.max-backoff}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public <T, E extends Exception> T execute(String operation, TransactionalCallback<T, E> callback) throws E {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return executeInTransaction(callback);
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("sodastock.optimistic-lock.conflicts", "operation", operation).increment();
+                if (attempt >= maxAttempts) {
+                    log.warn("Giving up on {} after {} optimistic lock conflicts", operation, attempt);
+                    throw e;
+                }
+                meterRegistry.counter("sodastock.optimistic-lock.retries", "operation", operation).increment();
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, E extends Exception> T executeInTransaction(TransactionalCallback<T, E> callback) throws E {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return callback.doInTransaction();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CheckedCallbackException(e);
+                }
+            });
+        } catch (CheckedCallbackException e) {
+            throw (E) e.getCause();
+        }
+    }
+
+    private void backOff(int attempt, OptimisticLockingFailureException conflict) {
+        long ceilingNanos = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        if (ceilingNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceilingNanos + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private static class CheckedCallbackException extends RuntimeException {
+
+        CheckedCallbackException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package one.digitalinnovation.sodastock.retry;
+
+@FunctionalInterface
+public interface TransactionalCallback<T, E extends Exception> {
+
+    T doInTransaction() throws E;
+
+}
@@ -0,0 +1,49 @@
+package one.digitalinnovation.sodastock.search;
+
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable soda name as kept by the {@link SodaNameIndex}, ordered by its folded form and ID.
+ */
+final class NameEntry {
+
+    static final Comparator<NameEntry> BY_NAME = Comparator.comparing(NameEntry::getFolded)
+            .thenComparingLong(NameEntry::getId);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final long id;
+    private final String folded;
+
+    private NameEntry(long id, String folded) {
+        this.id = id;
+        this.folded = folded;
+    }
+
+    static NameEntry of(long id, String name) {
+        return new NameEntry(id, fold(name));
+    }
+
+    static NameEntry probe(String folded) {
+        return new NameEntry(Long.MIN_VALUE, folded);
+    }
+
+    /**
+     * Lower-cases a name and strips its accents, so "Guaraná" and "GUARANA" fold to the same text.
+     */
+    static String fold(String name) {
+        String decomposed = Normalizer.normalize(name.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getFolded() {
+        return folded;
+    }
+}
@@ -0,0 +1,144 @@
+package one.digitalinnovation.sodastock.search;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of soda names for case and accent insensitive type-ahead. Names are kept sorted, so
+ * prefix matches are a range scan, and every name is also posted under each of its trigrams, so substring
+ * matches of three or more characters only look at names sharing all the trigrams of the query. Loaded once
+ * on startup and kept current by the created and deleted soda events; names never change in between.
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class SodaNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final SodaRepository sodaRepository;
+    private final ConcurrentMap<Long, NameEntry> entriesById = new ConcurrentHashMap<>();
+    private final NavigableSet<NameEntry> entriesByName = new ConcurrentSkipListSet<>(NameEntry.BY_NAME);
+    private final ConcurrentMap<String, Set<NameEntry>> entriesByGram = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        sodaRepository.findAll().forEach(soda -> add(soda.getId(), soda.getName()));
+    }
+
+    /**
+     * Returns the IDs of up to limit sodas whose name contains the query: names starting with it first,
+     * then names containing it elsewhere, each group in name order. Queries shorter than three characters
+     * only match prefixes.
+     */
+    public List<Long> search(String query, int limit) {
+        String folded = NameEntry.fold(query);
+        if (folded.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<NameEntry> matches = new LinkedHashSet<>();
+        for (NameEntry entry : entriesByName.tailSet(NameEntry.probe(folded), true)) {
+            if (matches.size() == limit || !entry.getFolded().startsWith(folded)) {
+                break;
+            }
+            matches.add(entry);
+        }
+
+        if (matches.size() < limit && folded.length() >= GRAM_LENGTH) {
+            containing(folded).stream()
+                    .filter(entry -> !matches.contains(entry))
+                    .sorted(NameEntry.BY_NAME)
+                    .limit(limit - matches.size())
+                    .forEach(matches::add);
+        }
+        return matches.stream().map(NameEntry::getId).collect(Collectors.toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        SodaDTO sodaDTO = event.getSoda();
+        if (event.getType() == SodaChangeType.CREATED) {
+            add(sodaDTO.getId(), sodaDTO.getName());
+        } else if (event.getType() == SodaChangeType.DELETED) {
+            remove(sodaDTO.getId());
+        }
+    }
+
+    private List<NameEntry> containing(String folded) {
+        List<Set<NameEntry>> postings = new ArrayList<>();
+        for (String gram : gramsOf(folded)) {
+            Set<NameEntry> posting = entriesByGram.get(gram);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            postings.add(posting);
+        }
+
+        Set<NameEntry> rarest = postings.stream().min(Comparator.comparingInt(Set::size)).get();
+        return rarest.stream()
+                .filter(entry -> entry.getFolded().contains(folded))
+                .collect(Collectors.toList());
+    }
+
+    private void add(Long id, String name) {
+        NameEntry entry = NameEntry.of(id, name);
+        entriesById.compute(id, (entryId, previous) -> {
+            if (previous != null) {
+                unpost(previous);
+            }
+            entriesByName.add(entry);
+            for (String gram : gramsOf(entry.getFolded())) {
+                entriesByGram.compute(gram, (key, posting) -> {
+                    Set<NameEntry> newPosting = posting == null ? ConcurrentHashMap.newKeySet() : posting;
+                    newPosting.add(entry);
+                    return newPosting;
+                });
+            }
+            return entry;
+        });
+    }
+
+    private void remove(Long id) {
+        entriesById.computeIfPresent(id, (entryId, entry) -> {
+            unpost(entry);
+            return null;
+        });
+    }
+
+    private void unpost(NameEntry entry) {
+        entriesByName.remove(entry);
+        for (String gram : gramsOf(entry.getFolded())) {
+            entriesByGram.computeIfPresent(gram, (key, posting) -> {
+                posting.remove(entry);
+                return posting.isEmpty() ? null : posting;
+            });
+        }
+    }
+
+    private static Set<String> gramsOf(String folded) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
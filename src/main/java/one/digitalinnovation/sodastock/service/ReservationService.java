@@ -0,0 +1,272 @@
+package one.digitalinnovation.sodastock.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.sodastock.dto.ReservationDTO;
+import one.digitalinnovation.sodastock.dto.ReservationRequestDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Reservation;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.ReservationNotFoundException;
+import one.digitalinnovation.sodastock.exception.ReservationsUnavailableException;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.ReservationRepository;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.reservation.HashedTimerWheel;
+import one.digitalinnovation.sodastock.reservation.ReservationTimer;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on soda stock for checkouts. A hold raises the reserved quantity of the soda, which decrements may
+ * not dip into, without touching its quantity; confirming it turns it into a decrement and releasing it,
+ * or letting it expire, gives the units back. Every hold is a row with its expiry, written in the transaction
+ * that reserves the units, so holds outlive the instance that placed them and any instance can confirm or
+ * release them. Settling a hold deletes its row first, so each hold is settled exactly once.
+ * <p>
+ * The instance that placed a hold also puts it in the reservation timer wheel and releases it on a dedicated
+ * thread once it expires, so the database round trips never delay the timer tick. Every sweep interval the
+ * expired rows are released from the database, which covers the holds of instances that stopped or died.
+ */
+@Slf4j
+@Service
+public class ReservationService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final SodaRepository sodaRepository;
+    private final ReservationRepository reservationRepository;
+    private final WriteBehindStockEngine stockEngine;
+    private final StockLedger stockLedger;
+    private final ReservationTimer reservationTimer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+    private final Executor expiryExecutor;
+    private final ConcurrentMap<UUID, LocalHold> localHoldsById = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReservationService(SodaRepository sodaRepository,
+                              ReservationRepository reservationRepository,
+                              WriteBehindStockEngine stockEngine,
+                              StockLedger stockLedger,
+                              ReservationTimer reservationTimer,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${sodastock.reservation.default-ttl}") Duration defaultTtl,
+                              @Value("${sodastock.reservation.max-ttl}") Duration maxTtl) {
+        this(sodaRepository, reservationRepository, stockEngine, stockLedger, reservationTimer, eventPublisher,
+                meterRegistry, transactionManager, defaultTtl, maxTtl,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "reservation-expiry");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    ReservationService(SodaRepository sodaRepository,
+                       ReservationRepository reservationRepository,
+                       WriteBehindStockEngine stockEngine,
+                       StockLedger stockLedger,
+                       ReservationTimer reservationTimer,
+                       ApplicationEventPublisher eventPublisher,
+                       MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager,
+                       Duration defaultTtl,
+                       Duration maxTtl,
+                       Executor expiryExecutor) {
+        this.sodaRepository = sodaRepository;
+        this.reservationRepository = reservationRepository;
+        this.stockEngine = stockEngine;
+        this.stockLedger = stockLedger;
+        this.reservationTimer = reservationTimer;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.expiryExecutor = expiryExecutor;
+        Gauge.builder("sodastock.reservations.active", localHoldsById, Map::size)
+                .description("Number of stock reservations placed by this instance and waiting in its timer wheel")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stopExpiring() throws InterruptedException {
+        if (expiryExecutor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) expiryExecutor;
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Transactional
+    public ReservationDTO reserve(Long sodaId, ReservationRequestDTO reservationRequestDTO)
+            throws SodaNotFoundException, SodaStockExceededException, ReservationsUnavailableException {
+        verifyReservationsAvailable();
+        int quantity = reservationRequestDTO.getQuantity();
+        if (sodaRepository.reserveQuantity(sodaId, quantity) == 0) {
+            if (!sodaRepository.existsById(sodaId)) {
+                throw new SodaNotFoundException(sodaId);
+            }
+            throw new SodaStockExceededException(sodaId, quantity);
+        }
+
+        Reservation reservation = reservationRepository.save(new Reservation(UUID.randomUUID(), sodaId, quantity,
+                reservationTimer.now().plus(ttlOf(reservationRequestDTO))));
+        LocalHold localHold = new LocalHold(reservation);
+        localHoldsById.put(reservation.getId(), localHold);
+        localHold.timeout = reservationTimer.schedule(() -> expire(localHold), reservation.getExpiresAt());
+        count("placed");
+        return toDTO(reservation);
+    }
+
+    @Transactional
+    public SodaDTO confirm(UUID reservationId)
+            throws ReservationNotFoundException, SodaNotFoundException, ReservationsUnavailableException {
+        verifyReservationsAvailable();
+        Reservation reservation = claim(reservationId);
+        if (sodaRepository.confirmReservedQuantity(reservation.getSodaId(), reservation.getQuantity()) == 0) {
+            throw new SodaNotFoundException(reservation.getSodaId());
+        }
+        stockLedger.record(reservation.getSodaId(), -reservation.getQuantity());
+        SodaDTO confirmedSoda = sodaRepository.findCurrentById(reservation.getSodaId())
+                .map(sodaMapper::toDTO)
+                .orElseThrow(() -> new SodaNotFoundException(reservation.getSodaId()));
+
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, confirmedSoda, -reservation.getQuantity()));
+        count("confirmed");
+        return confirmedSoda;
+    }
+
+    @Transactional
+    public void release(UUID reservationId) throws ReservationNotFoundException {
+        Reservation reservation = claim(reservationId);
+        sodaRepository.releaseReservedQuantity(reservation.getSodaId(), reservation.getQuantity());
+        count("released");
+    }
+
+    @Scheduled(fixedDelayString = "${sodastock.reservation.sweep-interval}")
+    public void sweepExpired() {
+        List<Reservation> expiredReservations = reservationRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(
+                reservationTimer.now(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+        for (Reservation reservation : expiredReservations) {
+            LocalHold localHold = localHoldsById.remove(reservation.getId());
+            if (localHold != null) {
+                cancelTimeout(localHold);
+            }
+            releaseExpired(reservation);
+        }
+    }
+
+    /**
+     * Holds placed here are known without a query; holds placed by another instance are read from their row.
+     */
+    private Reservation claim(UUID reservationId) throws ReservationNotFoundException {
+        LocalHold localHold = localHoldsById.remove(reservationId);
+        Reservation reservation;
+        if (localHold != null) {
+            cancelTimeout(localHold);
+            reservation = localHold.reservation;
+        } else {
+            reservation = reservationRepository.findById(reservationId)
+                    .orElseThrow(() -> new ReservationNotFoundException(reservationId));
+        }
+        if (reservationRepository.claim(reservationId) == 0) {
+            throw new ReservationNotFoundException(reservationId);
+        }
+        return reservation;
+    }
+
+    private static void cancelTimeout(LocalHold localHold) {
+        HashedTimerWheel.Timeout timeout = localHold.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void expire(LocalHold localHold) {
+        if (localHoldsById.remove(localHold.reservation.getId(), localHold)) {
+            expiryExecutor.execute(() -> releaseExpired(localHold.reservation));
+        }
+    }
+
+    private void releaseExpired(Reservation reservation) {
+        try {
+            Boolean released = transactionTemplate.execute(status -> {
+                if (reservationRepository.claim(reservation.getId()) == 0) {
+                    return false;
+                }
+                sodaRepository.releaseReservedQuantity(reservation.getSodaId(), reservation.getQuantity());
+                return true;
+            });
+            if (Boolean.TRUE.equals(released)) {
+                count("expired");
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not release the {} units held by reservation {} of soda {}, retrying on the next sweep",
+                    reservation.getQuantity(), reservation.getId(), reservation.getSodaId(), e);
+        }
+    }
+
+    private Duration ttlOf(ReservationRequestDTO reservationRequestDTO) {
+        if (reservationRequestDTO.getTtlSeconds() == null) {
+            return defaultTtl;
+        }
+        Duration ttl = Duration.ofSeconds(reservationRequestDTO.getTtlSeconds());
+        return ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+    }
+
+    private void verifyReservationsAvailable() throws ReservationsUnavailableException {
+        if (stockEngine.isEnabled()) {
+            throw new ReservationsUnavailableException();
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("sodastock.reservations", "outcome", outcome).increment();
+    }
+
+    private static ReservationDTO toDTO(Reservation reservation) {
+        return new ReservationDTO(reservation.getId(), reservation.getSodaId(), reservation.getQuantity(), reservation.getExpiresAt());
+    }
+
+    private static final class LocalHold {
+
+        private final Reservation reservation;
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private LocalHold(Reservation reservation) {
+            this.reservation = reservation;
+        }
+    }
+}
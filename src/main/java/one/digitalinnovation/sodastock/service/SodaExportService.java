@@ -0,0 +1,55 @@
+package one.digitalinnovation.sodastock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class SodaExportService {
+
+    private static final int FLUSH_INTERVAL = 500;
+
+    private final SodaRepository sodaRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    /**
+     * Writes every soda as one JSON document per line, reading them through a forward-only cursor.
+     * Each soda is detached as soon as it is written, so memory use does not grow with the catalog.
+     */
+    @Transactional(readOnly = true)
+    public void exportAll(OutputStream outputStream) throws IOException {
+        ObjectWriter sodaWriter = objectMapper.writerFor(SodaDTO.class);
+
+        try (Stream<Soda> sodas = sodaRepository.streamAllByOrderById()) {
+            long exported = 0;
+            Iterator<Soda> iterator = sodas.iterator();
+            while (iterator.hasNext()) {
+                Soda soda = iterator.next();
+                outputStream.write(sodaWriter.writeValueAsBytes(sodaMapper.toDTO(soda)));
+                outputStream.write('\n');
+                entityManager.detach(soda);
+
+                if (++exported % FLUSH_INTERVAL == 1) {
+                    outputStream.flush();
+                }
+            }
+        }
+        outputStream.flush();
+    }
+}
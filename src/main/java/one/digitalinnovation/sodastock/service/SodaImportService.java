@@ -0,0 +1,328 @@
+package one.digitalinnovation.sodastock.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportErrorDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportReportDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.InvalidImportFileException;
+import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports sodas from CSV or NDJSON, reading the input one line at a time. Valid rows are gathered in chunks;
+ * the names of each chunk are checked against the database in one query and the new sodas are inserted in
+ * one transaction, as JDBC batches. Every rejected row is reported with its line number, up to a bounded
+ * number of errors, so memory use does not grow with the file.
+ */
+@Slf4j
+@Service
+public class SodaImportService {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<String> CSV_COLUMNS = Arrays.asList("name", "max", "quantity", "size");
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    private final SodaRepository sodaRepository;
+    private final EntityManager entityManager;
+    private final ObjectReader sodaReader;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    @Autowired
+    public SodaImportService(SodaRepository sodaRepository,
+                             EntityManager entityManager,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             ApplicationEventPublisher eventPublisher,
+                             StockLedger stockLedger,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${sodastock.import.batch-size}") int batchSize) {
+        this.sodaRepository = sodaRepository;
+        this.entityManager = entityManager;
+        this.sodaReader = objectMapper.readerFor(SodaDTO.class);
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Imports a CSV file whose header names the columns name, max, quantity and size, in any order.
+     */
+    public SodaImportReportDTO importCsv(InputStream inputStream) throws IOException, InvalidImportFileException {
+        BufferedReader reader = readerOf(inputStream);
+        String header = reader.readLine();
+        if (header == null) {
+            return new SodaImportReportDTO();
+        }
+        List<String> headerFields = csvFieldsOf(header.startsWith(BYTE_ORDER_MARK) ? header.substring(1) : header);
+        Map<String, Integer> columns = csvColumnsOf(headerFields);
+        return importRows(reader, 1, line -> csvRowOf(line, headerFields.size(), columns));
+    }
+
+    /**
+     * Imports one JSON soda per line.
+     */
+    public SodaImportReportDTO importNdjson(InputStream inputStream) throws IOException {
+        return importRows(readerOf(inputStream), 0, sodaReader::readValue);
+    }
+
+    private SodaImportReportDTO importRows(BufferedReader reader, long lineNumber, RowParser rowParser) throws IOException {
+        SodaImportReportDTO report = new SodaImportReportDTO();
+        List<ImportRow> chunk = new ArrayList<>(batchSize);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            SodaDTO sodaDTO;
+            try {
+                sodaDTO = rowParser.parse(line);
+                if (sodaDTO == null) {
+                    throw new IllegalArgumentException("no soda given");
+                }
+            } catch (JsonProcessingException e) {
+                reject(report, lineNumber, null, "Malformed row: " + e.getOriginalMessage());
+                continue;
+            } catch (IllegalArgumentException e) {
+                reject(report, lineNumber, null, "Malformed row: " + e.getMessage());
+                continue;
+            }
+
+            String violations = violationsOf(sodaDTO);
+            if (violations != null) {
+                reject(report, lineNumber, sodaDTO.getName(), violations);
+                continue;
+            }
+
+            chunk.add(new ImportRow(lineNumber, sodaDTO));
+            if (chunk.size() == batchSize) {
+                importChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, report);
+        }
+        return report;
+    }
+
+    private void importChunk(List<ImportRow> chunk, SodaImportReportDTO report) {
+        Map<String, ImportRow> rowsByName = new LinkedHashMap<>();
+        for (ImportRow row : chunk) {
+            ImportRow firstRow = rowsByName.putIfAbsent(row.sodaDTO.getName(), row);
+            if (firstRow != null) {
+                reject(report, row.line, row.sodaDTO.getName(),
+                        String.format("Soda with name %s already appears on line %d.", row.sodaDTO.getName(), firstRow.line));
+            }
+        }
+
+        Set<String> registeredNames = sodaRepository.findNamesByNameIn(rowsByName.keySet());
+        List<ImportRow> newRows = new ArrayList<>(rowsByName.size());
+        for (ImportRow row : rowsByName.values()) {
+            if (registeredNames.contains(row.sodaDTO.getName())) {
+                reject(report, row.line, row.sodaDTO.getName(), new SodaAlreadyRegisteredException(row.sodaDTO.getName()).getMessage());
+            } else {
+                newRows.add(row);
+            }
+        }
+        if (newRows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(newRows));
+            report.setImported(report.getImported() + newRows.size());
+        } catch (DataAccessException e) {
+            String reason = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Could not import a chunk of {} sodas: {}", newRows.size(), reason);
+            newRows.forEach(row -> reject(report, row.line, row.sodaDTO.getName(), "Could not be stored: " + reason));
+        }
+    }
+
+    private void insert(List<ImportRow> rows) {
+        List<Soda> sodas = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            Soda soda = sodaMapper.toModel(row.sodaDTO);
+            soda.setId(null);
+            sodas.add(soda);
+        }
+
+        List<Soda> savedSodas = sodaRepository.saveAll(sodas);
+        sodaRepository.flush();
+        stockLedger.recordAll(savedSodas.stream()
+                .map(savedSoda -> new StockMovementDTO(savedSoda.getId(), savedSoda.getQuantity()))
+                .collect(Collectors.toList()));
+        for (Soda savedSoda : savedSodas) {
+            SodaDTO savedSodaDTO = sodaMapper.toDTO(savedSoda);
+            eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.CREATED, savedSodaDTO, savedSodaDTO.getQuantity()));
+        }
+        entityManager.clear();
+    }
+
+    private String violationsOf(SodaDTO sodaDTO) {
+        Set<ConstraintViolation<SodaDTO>> violations = validator.validate(sodaDTO);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void reject(SodaImportReportDTO report, long line, String name, String message) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new SodaImportErrorDTO(line, name, message));
+        }
+    }
+
+    private Map<String, Integer> csvColumnsOf(List<String> names) throws InvalidImportFileException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            throw new InvalidImportFileException("the CSV header must name the columns " + String.join(", ", CSV_COLUMNS));
+        }
+        return columns;
+    }
+
+    private SodaDTO csvRowOf(String line, int width, Map<String, Integer> columns) {
+        List<String> fields = csvFieldsOf(line);
+        if (fields.size() != width) {
+            throw new IllegalArgumentException(String.format("expected %d fields but found %d", width, fields.size()));
+        }
+
+        String size = csvValueOf(fields, columns, "size");
+        return SodaDTO.builder()
+                .name(csvValueOf(fields, columns, "name"))
+                .max(intOf(csvValueOf(fields, columns, "max"), "max"))
+                .quantity(intOf(csvValueOf(fields, columns, "quantity"), "quantity"))
+                .size(size == null ? null : sizeOf(size))
+                .build();
+    }
+
+    private static String csvValueOf(List<String> fields, Map<String, Integer> columns, String column) {
+        String value = fields.get(columns.get(column)).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer intOf(String value, String column) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s %s is not a whole number", column, value));
+        }
+    }
+
+    private static SodaSize sizeOf(String value) {
+        try {
+            return SodaSize.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("size %s is not one of %s", value, Arrays.toString(SodaSize.values())));
+        }
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with doubled quotes inside them.
+     */
+    private static List<String> csvFieldsOf(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("a quoted field is not closed");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static BufferedReader readerOf(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        SodaDTO parse(String line) throws IOException;
+    }
+
+    private static final class ImportRow {
+
+        private final long line;
+        private final SodaDTO sodaDTO;
+
+        private ImportRow(long line, SodaDTO sodaDTO) {
+            this.line = line;
+            this.sodaDTO = sodaDTO;
+        }
+    }
+}
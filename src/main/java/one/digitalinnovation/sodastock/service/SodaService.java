@@ -1,76 +1,345 @@
 package one.digitalinnovation.sodastock.service;
 
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.cache.SingleFlight;
+import one.digitalinnovation.sodastock.catalog.CatalogReadModel;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaPageDTO;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementResultDTO;
 import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.enums.StockMovementStatus;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.InvalidStockThresholdException;
 import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
 import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
 import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.idempotency.StockOperation;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
 import one.digitalinnovation.sodastock.mapper.SodaMapper;
 import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.retry.OptimisticLockRetry;
+import one.digitalinnovation.sodastock.search.SodaNameIndex;
+import one.digitalinnovation.sodastock.stock.SodaSizeAggregates;
+import one.digitalinnovation.sodastock.stock.StockCombiner;
+import one.digitalinnovation.sodastock.stock.StockLevelIndex;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class SodaService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final SodaRepository sodaRepository;
+    private final SingleFlight singleFlight;
+    private final WriteBehindStockEngine stockEngine;
+    private final StockCombiner stockCombiner;
+    private final StockLevelIndex stockLevelIndex;
+    private final SodaSizeAggregates sodaSizeAggregates;
+    private final SodaNameIndex sodaNameIndex;
+    private final CatalogReadModel catalogReadModel;
+    private final StockLedger stockLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OptimisticLockRetry optimisticLockRetry;
     private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
 
+    @Transactional
     public SodaDTO createSoda(SodaDTO sodaDTO) throws SodaAlreadyRegisteredException {
         verifyIfIsAlreadyRegistered(sodaDTO.getName());
         Soda soda = sodaMapper.toModel(sodaDTO);
         Soda savedSoda = sodaRepository.save(soda);
-        return sodaMapper.toDTO(savedSoda);
+        SodaDTO savedSodaDTO = sodaMapper.toDTO(savedSoda);
+        stockLedger.record(savedSodaDTO.getId(), savedSodaDTO.getQuantity());
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.CREATED, savedSodaDTO, savedSodaDTO.getQuantity()));
+        return savedSodaDTO;
     }
 
     public SodaDTO findByName(String name) throws SodaNotFoundException {
-        Soda foundSoda = sodaRepository.findByName(name).orElseThrow(() -> new SodaNotFoundException(name));
-        return sodaMapper.toDTO(foundSoda);
+        return lookupByName(name).orElseThrow(() -> new SodaNotFoundException(name));
+    }
+
+    public SodaResultDTO tryFindByName(String name) {
+        return lookupByName(name).map(SodaResultDTO::ok).orElseGet(SodaResultDTO::notFound);
+    }
+
+    public SodaPageDTO listPage(String cursor, int limit, SodaSize size) throws InvalidCursorException {
+        long afterId = decodeCursor(cursor);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<SodaDTO> foundSodas = catalogReadModel.snapshot().page(afterId, pageSize + 1, size);
+
+        List<SodaDTO> sodas = foundSodas.stream()
+                .limit(pageSize)
+                .map(this::withEngineQuantity)
+                .collect(Collectors.toList());
+        String nextCursor = foundSodas.size() > pageSize ? encodeCursor(sodas.get(pageSize - 1).getId()) : null;
+
+        return new SodaPageDTO(sodas, nextCursor);
     }
 
-    public List<SodaDTO> listAll() {
-        return sodaRepository.findAll()
+    public List<SodaDTO> findByStockLevel(Double below, Double above, int limit) throws InvalidStockThresholdException {
+        if ((below == null) == (above == null)) {
+            throw new InvalidStockThresholdException();
+        }
+        int resultSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return below != null
+                ? stockLevelIndex.findBelow(below, resultSize)
+                : stockLevelIndex.findAbove(above, resultSize);
+    }
+
+    public List<SodaDTO> searchByName(String query, int limit) {
+        int resultSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return sodaNameIndex.search(query, resultSize)
                 .stream()
-                .map(sodaMapper::toDTO)
+                .map(stockLevelIndex::find)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
                 .collect(Collectors.toList());
     }
 
+    public List<SodaSizeAggregateDTO> aggregateBySize() {
+        return sodaSizeAggregates.aggregates();
+    }
+
     public void deleteById (Long id) throws SodaNotFoundException {
-        verifyIsExists(id);
-        sodaRepository.deleteById(id);
+        optimisticLockRetry.execute("delete", () -> {
+            SodaDTO sodaToDelete = sodaMapper.toDTO(verifyIsExists(id));
+            sodaRepository.deleteById(id);
+            stockLedger.record(id, -sodaToDelete.getQuantity());
+            eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.DELETED, sodaToDelete, -sodaToDelete.getQuantity()));
+            return null;
+        });
     }
 
     public SodaDTO increment(Long id, int quantityToIncrement) throws SodaNotFoundException , SodaStockExceededException {
 
-        Soda sodaToIncrementStock = verifyIsExists(id);
-        int quantityAfterIncrement = quantityToIncrement + sodaToIncrementStock.getQuantity();
-
-        if (quantityAfterIncrement <= sodaToIncrementStock.getMax()) {
-            sodaToIncrementStock.setQuantity(sodaToIncrementStock.getQuantity() + quantityToIncrement);
-            Soda incrementedSodaStock = sodaRepository.save(sodaToIncrementStock);
-            return sodaMapper.toDTO(incrementedSodaStock);
+        SodaDTO incrementedSodaStock;
+        if (stockEngine.isEnabled()) {
+            incrementedSodaStock = stockEngine.adjust(id, quantityToIncrement);
+        } else if (stockCombiner.isEnabled()) {
+            incrementedSodaStock = stockCombiner.adjust(id, quantityToIncrement);
+        } else {
+            Optional<Soda> incrementedSoda = incrementAndRecord(id, quantityToIncrement);
+            incrementedSodaStock = sodaMapper.toDTO(verifyIsUpdated(incrementedSoda, id, quantityToIncrement));
         }
 
-        throw new SodaStockExceededException(id, quantityToIncrement);
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, incrementedSodaStock, quantityToIncrement));
+        return incrementedSodaStock;
     }
 
     public SodaDTO decrement(Long id, int quantityToDecrement) throws SodaNotFoundException , SodaStockExceededException {
 
-        Soda sodaToDecrementStock = verifyIsExists(id);
+        SodaDTO decrementedSodaStock;
+        if (stockEngine.isEnabled()) {
+            decrementedSodaStock = stockEngine.adjust(id, -quantityToDecrement);
+        } else if (stockCombiner.isEnabled()) {
+            decrementedSodaStock = stockCombiner.adjust(id, -quantityToDecrement);
+        } else {
+            Optional<Soda> decrementedSoda = decrementAndRecord(id, quantityToDecrement);
+            decrementedSodaStock = sodaMapper.toDTO(verifyIsUpdated(decrementedSoda, id, quantityToDecrement));
+        }
+
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, decrementedSodaStock, -quantityToDecrement));
+        return decrementedSodaStock;
+    }
+
+    public SodaResultDTO tryIncrement(Long id, int quantityToIncrement) {
+        if (stockEngine.isEnabled() || stockCombiner.isEnabled()) {
+            return resultOf(() -> increment(id, quantityToIncrement));
+        }
+        return toStockChangeResult(incrementAndRecord(id, quantityToIncrement), id, quantityToIncrement);
+    }
+
+    public SodaResultDTO tryDecrement(Long id, int quantityToDecrement) {
+        if (stockEngine.isEnabled() || stockCombiner.isEnabled()) {
+            return resultOf(() -> decrement(id, quantityToDecrement));
+        }
+        return toStockChangeResult(decrementAndRecord(id, quantityToDecrement), id, -quantityToDecrement);
+    }
+
+    @Transactional
+    public List<StockMovementResultDTO> adjustStock(List<StockMovementDTO> movements) {
+
+        if (stockEngine.isEnabled()) {
+            return adjustStockInEngine(movements);
+        }
+
+        int[] updatedRows = sodaRepository.adjustQuantities(movements);
+
+        Set<Long> sodaIds = movements.stream()
+                .map(StockMovementDTO::getId)
+                .collect(Collectors.toSet());
+        Map<Long, SodaDTO> sodasById = sodaRepository.findAllById(sodaIds)
+                .stream()
+                .map(sodaMapper::toDTO)
+                .collect(Collectors.toMap(SodaDTO::getId, Function.identity()));
+
+        // The updates keep each row locked until commit, so the rows read back hold the quantities after the
+        // last movement. Walking the batch backwards undoes one applied movement at a time, which gives every
+        // entry the quantity right after its own movement even when a soda appears more than once.
+        Map<Long, Integer> quantitiesById = new HashMap<>();
+        sodasById.forEach((sodaId, soda) -> quantitiesById.put(sodaId, soda.getQuantity()));
+        StockMovementResultDTO[] results = new StockMovementResultDTO[movements.size()];
+        for (int i = movements.size() - 1; i >= 0; i--) {
+            StockMovementDTO movement = movements.get(i);
+            StockMovementStatus status = toMovementStatus(updatedRows[i], sodasById.get(movement.getId()));
+            Integer quantity = quantitiesById.get(movement.getId());
+            results[i] = StockMovementResultDTO.builder()
+                    .id(movement.getId())
+                    .delta(movement.getDelta())
+                    .status(status)
+                    .quantity(quantity)
+                    .build();
+            if (status == StockMovementStatus.APPLIED) {
+                quantitiesById.put(movement.getId(), quantity - movement.getDelta());
+            }
+        }
 
-        int sodaStockAfterDecremented = sodaToDecrementStock.getQuantity() - quantityToDecrement;
-        if (sodaStockAfterDecremented >= 0) {
-            sodaToDecrementStock.setQuantity(sodaStockAfterDecremented);
-            Soda decrementedSodaStock = sodaRepository.save(sodaToDecrementStock);
-            return sodaMapper.toDTO(decrementedSodaStock);
+        List<StockMovementDTO> appliedMovements = new ArrayList<>(results.length);
+        for (StockMovementResultDTO result : results) {
+            if (result.getStatus() == StockMovementStatus.APPLIED) {
+                appliedMovements.add(new StockMovementDTO(result.getId(), result.getDelta()));
+                SodaDTO soda = sodasById.get(result.getId());
+                SodaDTO movedSoda = new SodaDTO(soda.getId(), soda.getName(), soda.getMax(), result.getQuantity(), soda.getSize());
+                eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, movedSoda, result.getDelta()));
+            }
+        }
+        stockLedger.recordAll(appliedMovements);
+        return Arrays.asList(results);
+    }
+
+    private List<StockMovementResultDTO> adjustStockInEngine(List<StockMovementDTO> movements) {
+        List<StockMovementResultDTO> results = new ArrayList<>(movements.size());
+        for (StockMovementDTO movement : movements) {
+            StockMovementResultDTO.StockMovementResultDTOBuilder result = StockMovementResultDTO.builder()
+                    .id(movement.getId())
+                    .delta(movement.getDelta());
+            try {
+                SodaDTO soda = stockEngine.adjust(movement.getId(), movement.getDelta());
+                eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, soda, movement.getDelta()));
+                result.status(StockMovementStatus.APPLIED).quantity(soda.getQuantity());
+            } catch (SodaNotFoundException e) {
+                result.status(StockMovementStatus.NOT_FOUND);
+            } catch (SodaStockExceededException e) {
+                result.status(StockMovementStatus.STOCK_EXCEEDED)
+                        .quantity(stockEngine.quantityOf(movement.getId()).orElse(null));
+            }
+            results.add(result.build());
+        }
+        return results;
+    }
+
+    private Optional<SodaDTO> lookupByName(String name) {
+        Optional<SodaDTO> snapshotSoda = catalogReadModel.snapshot().findByName(name);
+        if (snapshotSoda.isPresent()) {
+            return snapshotSoda.map(this::withEngineQuantity);
+        }
+
+        // The snapshot holds every soda, so a miss is either an unknown name or a creation the snapshot has
+        // not applied yet. Only the database can tell them apart; concurrent misses for the same name share
+        // one query, so a burst of lookups for a missing name costs a single round trip.
+        Optional<SodaDTO> foundSodaDTO = singleFlight.execute("findByName", name, () -> sodaRepository.findDTOByName(name));
+        return foundSodaDTO.map(this::withEngineQuantity);
+    }
+
+    private Optional<Soda> incrementAndRecord(Long id, int quantityToIncrement) {
+        return optimisticLockRetry.execute("increment", () -> {
+            Optional<Soda> incrementedSoda = sodaRepository.incrementAndGet(id, quantityToIncrement);
+            incrementedSoda.ifPresent(soda -> stockLedger.record(id, quantityToIncrement));
+            return incrementedSoda;
+        });
+    }
+
+    private Optional<Soda> decrementAndRecord(Long id, int quantityToDecrement) {
+        return optimisticLockRetry.execute("decrement", () -> {
+            Optional<Soda> decrementedSoda = sodaRepository.decrementAndGet(id, quantityToDecrement);
+            decrementedSoda.ifPresent(soda -> stockLedger.record(id, -quantityToDecrement));
+            return decrementedSoda;
+        });
+    }
+
+    private SodaResultDTO toStockChangeResult(Optional<Soda> changedSoda, Long id, int delta) {
+        if (!changedSoda.isPresent()) {
+            return sodaRepository.existsById(id) ? SodaResultDTO.stockExceeded() : SodaResultDTO.notFound();
+        }
+        SodaDTO changedSodaDTO = sodaMapper.toDTO(changedSoda.get());
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, changedSodaDTO, delta));
+        return SodaResultDTO.ok(changedSodaDTO);
+    }
+
+    private static SodaResultDTO resultOf(StockOperation stockOperation) {
+        try {
+            return SodaResultDTO.ok(stockOperation.execute());
+        } catch (SodaNotFoundException e) {
+            return SodaResultDTO.notFound();
+        } catch (SodaStockExceededException e) {
+            return SodaResultDTO.stockExceeded();
+        }
+    }
+
+    private SodaDTO withEngineQuantity(SodaDTO sodaDTO) {
+        if (!stockEngine.isEnabled()) {
+            return sodaDTO;
+        }
+        return stockEngine.quantityOf(sodaDTO.getId())
+                .map(quantity -> new SodaDTO(sodaDTO.getId(), sodaDTO.getName(), sodaDTO.getMax(), quantity, sodaDTO.getSize()))
+                .orElse(sodaDTO);
+    }
+
+    private StockMovementStatus toMovementStatus(int updatedRows, SodaDTO soda) {
+        if (soda == null) {
+            return StockMovementStatus.NOT_FOUND;
+        }
+        return updatedRows > 0 ? StockMovementStatus.APPLIED : StockMovementStatus.STOCK_EXCEEDED;
+    }
+
+    private String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private long decodeCursor(String cursor) throws InvalidCursorException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    private Soda verifyIsUpdated(Optional<Soda> updatedSoda, Long id, int quantity) throws SodaNotFoundException, SodaStockExceededException {
+        if (updatedSoda.isPresent()) {
+            return updatedSoda.get();
+        }
+        if (!sodaRepository.existsById(id)) {
+            throw new SodaNotFoundException(id);
         }
-        throw new SodaStockExceededException(id, quantityToDecrement);
+        throw new SodaStockExceededException(id, quantity);
     }
 
     private Soda verifyIsExists (Long id) throws SodaNotFoundException {
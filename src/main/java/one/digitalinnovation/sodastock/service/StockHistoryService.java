@@ -0,0 +1,49 @@
+package one.digitalinnovation.sodastock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.dto.StockQuantityAtDTO;
+import one.digitalinnovation.sodastock.entity.StockSnapshot;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.repository.StockMovementRepository;
+import one.digitalinnovation.sodastock.repository.StockSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockHistoryService {
+
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final StockMovementRepository stockMovementRepository;
+
+    @Transactional(readOnly = true)
+    public StockQuantityAtDTO quantityAt(Long id, Instant at) throws SodaNotFoundException {
+        Optional<StockSnapshot> snapshot = stockSnapshotRepository.findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(id, at);
+        if (!snapshot.isPresent()) {
+            verifyHadMovementsAt(id, at);
+        }
+
+        int snapshotQuantity = snapshot.map(StockSnapshot::getQuantity).orElse(0);
+        long afterGeneration = snapshot.map(StockSnapshot::getGeneration).orElse(0L);
+        long deltaSinceSnapshot = stockMovementRepository.sumDeltas(id, afterGeneration, at);
+
+        return StockQuantityAtDTO.builder()
+                .id(id)
+                .at(at)
+                .quantity(Math.toIntExact(snapshotQuantity + deltaSinceSnapshot))
+                .build();
+    }
+
+    private void verifyHadMovementsAt(Long id, Instant at) throws SodaNotFoundException {
+        boolean hadMovements = stockMovementRepository.findFirstBySodaIdOrderByIdAsc(id)
+                .filter(firstMovement -> !firstMovement.getCreatedAt().isAfter(at))
+                .isPresent();
+        if (!hadMovements) {
+            throw new SodaNotFoundException(id);
+        }
+    }
+}
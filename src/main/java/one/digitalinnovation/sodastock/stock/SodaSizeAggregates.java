@@ -0,0 +1,67 @@
+package one.digitalinnovation.sodastock.stock;
+
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of sodas and total units in stock per size, answered from memory. Rebuilt from the soda table on
+ * startup and kept current by each committed soda change.
+ */
+@Component
+public class SodaSizeAggregates {
+
+    private final SodaRepository sodaRepository;
+    private final Map<SodaSize, LongAdder> skusBySize = new EnumMap<>(SodaSize.class);
+    private final Map<SodaSize, LongAdder> unitsBySize = new EnumMap<>(SodaSize.class);
+
+    @Autowired
+    public SodaSizeAggregates(SodaRepository sodaRepository) {
+        this.sodaRepository = sodaRepository;
+        for (SodaSize size : SodaSize.values()) {
+            skusBySize.put(size, new LongAdder());
+            unitsBySize.put(size, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        skusBySize.values().forEach(LongAdder::reset);
+        unitsBySize.values().forEach(LongAdder::reset);
+        for (SodaSizeAggregateDTO aggregate : sodaRepository.aggregateBySize()) {
+            skusBySize.get(aggregate.getSize()).add(aggregate.getSkus());
+            unitsBySize.get(aggregate.getSize()).add(aggregate.getUnits());
+        }
+    }
+
+    public List<SodaSizeAggregateDTO> aggregates() {
+        List<SodaSizeAggregateDTO> aggregates = new ArrayList<>(SodaSize.values().length);
+        for (SodaSize size : SodaSize.values()) {
+            aggregates.add(new SodaSizeAggregateDTO(size, skusBySize.get(size).sum(), unitsBySize.get(size).sum()));
+        }
+        return aggregates;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        SodaSize size = event.getSoda().getSize();
+        if (event.getType() == SodaChangeType.CREATED) {
+            skusBySize.get(size).increment();
+        } else if (event.getType() == SodaChangeType.DELETED) {
+            skusBySize.get(size).decrement();
+        }
+        unitsBySize.get(size).add(event.getDelta());
+    }
+}
@@ -0,0 +1,235 @@
+package one.digitalinnovation.sodastock.stock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional combining mode for stock adjustments. Concurrent adjustments of the same soda queue up and
+ * whichever caller finds the soda free becomes its combiner: it reads the current row, replays the queued
+ * deltas in arrival order between the reserved quantity and max, and writes the resulting quantity with
+ * one compare-and-set on the soda version, rereading and replaying when another writer got in between. The
+ * compare-and-set records the applied deltas in the stock ledger within its own transaction.
+ * Each caller then gets the quantity right after its own delta, or a stock exceeded error when its delta
+ * did not fit at its place in the order. A hot soda therefore costs one update per batch instead of one
+ * per adjustment. Batch sizes are published as "sodastock.combining.batch".
+ * <p>
+ * A combining pass takes at most sodastock.combining.max-batch adjustments. A caller keeps the lane only
+ * until its own adjustment is answered and then hands it to the oldest queued caller, so no thread serves
+ * the others for longer than its own wait. A lane is dropped as soon as nothing is queued on it; a caller
+ * that raced with the drop still combines on the lane it holds, and the version check keeps two lanes of
+ * the same soda correct.
+ */
+@Component
+public class StockCombiner {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final boolean enabled;
+    private final SodaRepository sodaRepository;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatch;
+    private final ConcurrentMap<Long, Lane> lanesById = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizes;
+    private final Counter conflicts;
+
+    @Autowired
+    public StockCombiner(@Value("${sodastock.combining.enabled}") boolean enabled,
+                         SodaRepository sodaRepository,
+                         StockLedger stockLedger,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${sodastock.combining.max-batch}") int maxBatch,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.sodaRepository = sodaRepository;
+        this.stockLedger = stockLedger;
+        // The combining caller writes the adjustments of the others, so the write never joins its transaction.
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxBatch = Math.max(maxBatch, 1);
+        this.batchSizes = DistributionSummary.builder("sodastock.combining.batch")
+                .description("Number of stock adjustments written by one combined update")
+                .register(meterRegistry);
+        this.conflicts = meterRegistry.counter("sodastock.combining.conflicts");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adjusts the stock of a soda by a signed delta, combined with the adjustments of the same soda that
+     * are queued at the same time, and returns the soda as it was right after this delta.
+     */
+    public SodaDTO adjust(Long id, int delta) throws SodaNotFoundException, SodaStockExceededException {
+        Lane lane = lanesById.computeIfAbsent(id, Lane::new);
+        Adjustment adjustment = new Adjustment(delta);
+        lane.pending.add(adjustment);
+
+        // Whoever releases the lane wakes the oldest queued caller, which takes the lane over unless its
+        // adjustment was answered meanwhile; parking is bounded, so a lost wake-up only costs latency.
+        while (!adjustment.result.isDone()) {
+            if (lane.combining.compareAndSet(false, true)) {
+                try {
+                    combine(lane);
+                } finally {
+                    lane.combining.set(false);
+                }
+                wakeOldest(lane);
+            } else {
+                LockSupport.parkNanos(lane, MAX_PARK_NANOS);
+            }
+        }
+        if (lane.pending.isEmpty()) {
+            lanesById.remove(id, lane);
+        }
+        return adjustment.await();
+    }
+
+    int laneCount() {
+        return lanesById.size();
+    }
+
+    private static void wakeOldest(Lane lane) {
+        Adjustment oldest = lane.pending.peek();
+        if (oldest != null) {
+            LockSupport.unpark(oldest.waiter);
+        }
+    }
+
+    private void combine(Lane lane) {
+        List<Adjustment> batch = new ArrayList<>(Math.min(maxBatch, 16));
+        Adjustment adjustment;
+        while (batch.size() < maxBatch && (adjustment = lane.pending.poll()) != null) {
+            batch.add(adjustment);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        batchSizes.record(batch.size());
+        try {
+            apply(lane.id, batch);
+        } catch (RuntimeException e) {
+            batch.forEach(queued -> queued.result.completeExceptionally(e));
+        }
+        batch.forEach(queued -> LockSupport.unpark(queued.waiter));
+    }
+
+    private void apply(Long id, List<Adjustment> batch) {
+        while (true) {
+            Optional<Soda> current = sodaRepository.findCurrentById(id);
+            if (!current.isPresent()) {
+                batch.forEach(queued -> queued.result.completeExceptionally(new SodaNotFoundException(id)));
+                return;
+            }
+
+            Soda soda = current.get();
+            int[] quantities = new int[batch.size()];
+            int quantity = soda.getQuantity();
+            List<StockMovementDTO> appliedMovements = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                int adjusted = quantity + batch.get(i).delta;
+                if (adjusted >= soda.getReserved() && adjusted <= soda.getMax()) {
+                    quantity = adjusted;
+                    quantities[i] = quantity;
+                    appliedMovements.add(new StockMovementDTO(id, batch.get(i).delta));
+                } else {
+                    quantities[i] = -1;
+                }
+            }
+
+            if (quantity != soda.getQuantity() && !write(soda, quantity, appliedMovements)) {
+                conflicts.increment();
+                continue;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                Adjustment queued = batch.get(i);
+                if (quantities[i] < 0) {
+                    queued.result.completeExceptionally(new SodaStockExceededException(id, Math.abs(queued.delta)));
+                } else {
+                    queued.result.complete(new SodaDTO(soda.getId(), soda.getName(), soda.getMax(), quantities[i], soda.getSize()));
+                }
+            }
+            return;
+        }
+    }
+
+    private boolean write(Soda soda, int quantity, List<StockMovementDTO> appliedMovements) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (sodaRepository.compareAndSetQuantity(soda.getId(), soda.getVersion(), quantity) == 0) {
+                return false;
+            }
+            stockLedger.recordAll(appliedMovements);
+            return true;
+        }));
+    }
+
+    private static final class Lane {
+
+        private final Long id;
+        private final Queue<Adjustment> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean combining = new AtomicBoolean();
+
+        private Lane(Long id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Adjustment {
+
+        private final int delta;
+        private final Thread waiter = Thread.currentThread();
+        private final CompletableFuture<SodaDTO> result = new CompletableFuture<>();
+
+        private Adjustment(int delta) {
+            this.delta = delta;
+        }
+
+        private SodaDTO await() throws SodaNotFoundException, SodaStockExceededException {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SodaNotFoundException) {
+                    throw (SodaNotFoundException) cause;
+                }
+                if (cause instanceof SodaStockExceededException) {
+                    throw (SodaStockExceededException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package one.digitalinnovation.sodastock.stock;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authoritative in-memory quantity of one soda. Adjustments are lock-free and never leave reserved..max;
+ * the counter remembers since when it holds changes that were not written to the database yet, and the
+ * quantity it last wrote, so the flush sends the difference instead of overwriting the row. The reserved
+ * quantity follows the row, since holds are placed on it directly. A retired counter refuses every adjustment,
+ * so callers that still hold it load a fresh one.
+ */
+class StockCounter {
+
+    static final int STOCK_EXCEEDED = -1;
+    static final int RETIRED = -2;
+
+    private static final long CLEAN = 0L;
+
+    private final Long id;
+    private final String name;
+    private final int max;
+    private volatile int reserved;
+    private final SodaSize size;
+    private final AtomicInteger quantity;
+    private final AtomicLong dirtySince = new AtomicLong(CLEAN);
+
+    /**
+     * Quantity last written to the database; only read and written under the engine's flush lock.
+     */
+    private int flushedQuantity;
+
+    StockCounter(SodaDTO sodaDTO, int reserved) {
+        this.id = sodaDTO.getId();
+        this.name = sodaDTO.getName();
+        this.max = sodaDTO.getMax();
+        this.reserved = reserved;
+        this.size = sodaDTO.getSize();
+        this.quantity = new AtomicInteger(sodaDTO.getQuantity());
+        this.flushedQuantity = sodaDTO.getQuantity();
+    }
+
+    /**
+     * Returns the quantity after the adjustment, {@link #STOCK_EXCEEDED} when it would leave reserved..max,
+     * or {@link #RETIRED} when the counter no longer accepts adjustments.
+     */
+    int adjust(int delta, long now) {
+        while (true) {
+            int currentQuantity = quantity.get();
+            if (currentQuantity == RETIRED) {
+                return RETIRED;
+            }
+            int adjustedQuantity = currentQuantity + delta;
+            if (adjustedQuantity < reserved || adjustedQuantity > max) {
+                return STOCK_EXCEEDED;
+            }
+            if (quantity.compareAndSet(currentQuantity, adjustedQuantity)) {
+                dirtySince.compareAndSet(CLEAN, now);
+                return adjustedQuantity;
+            }
+        }
+    }
+
+    /**
+     * Marks the counter as clean and returns since when it was dirty, or 0 when it was already clean.
+     * The quantity must be read after this call, so that concurrent adjustments are flushed again.
+     */
+    long markClean() {
+        return dirtySince.getAndSet(CLEAN);
+    }
+
+    void markDirty(long since) {
+        dirtySince.accumulateAndGet(since, (current, previous) -> current == CLEAN ? previous : Math.min(current, previous));
+    }
+
+    /**
+     * Difference between the given quantity and the quantity last written to the database.
+     */
+    int unflushedDelta(int currentQuantity) {
+        return currentQuantity - flushedQuantity;
+    }
+
+    void markFlushed(int flushedQuantity) {
+        this.flushedQuantity = flushedQuantity;
+    }
+
+    int getFlushedQuantity() {
+        return flushedQuantity;
+    }
+
+    void refreshReserved(int reserved) {
+        this.reserved = reserved;
+    }
+
+    /**
+     * Retires the counter if it holds nothing that was not written to the database yet.
+     */
+    boolean retireIfFlushed() {
+        return dirtySince.get() == CLEAN && quantity.compareAndSet(flushedQuantity, RETIRED);
+    }
+
+    /**
+     * Retires the counter whatever it holds and returns the delta that will never be written.
+     */
+    int retire() {
+        int lastQuantity = quantity.getAndSet(RETIRED);
+        return lastQuantity == RETIRED ? 0 : lastQuantity - flushedQuantity;
+    }
+
+    long getDirtySince() {
+        return dirtySince.get();
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    int getQuantity() {
+        return quantity.get();
+    }
+
+    SodaDTO toDTO(int quantity) {
+        return new SodaDTO(id, name, max, quantity, size);
+    }
+}
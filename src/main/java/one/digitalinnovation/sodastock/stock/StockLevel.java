@@ -0,0 +1,54 @@
+package one.digitalinnovation.sodastock.stock;
+
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+
+import java.util.Comparator;
+
+/**
+ * Immutable stock level of one soda as kept by the {@link StockLevelIndex}, ordered by fill ratio and ID.
+ */
+final class StockLevel {
+
+    static final Comparator<StockLevel> BY_RATIO = Comparator.comparingDouble(StockLevel::getRatio)
+            .thenComparingLong(StockLevel::getId);
+
+    private final long id;
+    private final SodaDTO soda;
+    private final double ratio;
+
+    private StockLevel(long id, SodaDTO soda, double ratio) {
+        this.id = id;
+        this.soda = soda;
+        this.ratio = ratio;
+    }
+
+    static StockLevel of(SodaDTO sodaDTO) {
+        return of(sodaDTO, sodaDTO.getQuantity());
+    }
+
+    static StockLevel probe(double ratio, long id) {
+        return new StockLevel(id, null, ratio);
+    }
+
+    StockLevel adjust(int delta) {
+        return of(soda, soda.getQuantity() + delta);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    SodaDTO getSoda() {
+        return soda;
+    }
+
+    double getRatio() {
+        return ratio;
+    }
+
+    private static StockLevel of(SodaDTO sodaDTO, int quantity) {
+        SodaDTO levelSoda = new SodaDTO(sodaDTO.getId(), sodaDTO.getName(), sodaDTO.getMax(), quantity, sodaDTO.getSize());
+        double ratio = sodaDTO.getMax() > 0 ? (double) quantity / sodaDTO.getMax() : 0.0;
+        return new StockLevel(sodaDTO.getId(), levelSoda, ratio);
+    }
+}
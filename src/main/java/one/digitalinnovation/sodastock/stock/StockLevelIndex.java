@@ -0,0 +1,98 @@
+package one.digitalinnovation.sodastock.stock;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of every soda ordered by its quantity/max ratio, so sodas close to empty or close to full
+ * are found in time proportional to the matches. Loaded once on startup and kept current by applying the
+ * signed delta of each committed soda change; deltas commute, so stock changes committed concurrently may
+ * arrive in any order and still leave the right quantity. Only a creation adds a soda: a stock change for a
+ * soda the index does not hold, such as one deleted meanwhile, is ignored.
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockLevelIndex {
+
+    private final SodaRepository sodaRepository;
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+    private final ConcurrentMap<Long, StockLevel> levelsById = new ConcurrentHashMap<>();
+    private final NavigableSet<StockLevel> levelsByRatio = new ConcurrentSkipListSet<>(StockLevel.BY_RATIO);
+
+    @PostConstruct
+    public void load() {
+        sodaRepository.findAll()
+                .stream()
+                .map(sodaMapper::toDTO)
+                .forEach(sodaDTO -> update(sodaDTO.getId(), level -> StockLevel.of(sodaDTO)));
+    }
+
+    public Optional<SodaDTO> find(Long id) {
+        return Optional.ofNullable(levelsById.get(id)).map(StockLevel::getSoda);
+    }
+
+    public List<SodaDTO> findBelow(double ratio, int limit) {
+        return levelsByRatio.headSet(StockLevel.probe(ratio, Long.MIN_VALUE), false)
+                .stream()
+                .limit(limit)
+                .map(StockLevel::getSoda)
+                .collect(Collectors.toList());
+    }
+
+    public List<SodaDTO> findAbove(double ratio, int limit) {
+        return levelsByRatio.tailSet(StockLevel.probe(ratio, Long.MAX_VALUE), false)
+                .descendingSet()
+                .stream()
+                .limit(limit)
+                .map(StockLevel::getSoda)
+                .collect(Collectors.toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        SodaDTO sodaDTO = event.getSoda();
+        if (event.getType() == SodaChangeType.DELETED) {
+            levelsById.computeIfPresent(sodaDTO.getId(), (id, level) -> {
+                levelsByRatio.remove(level);
+                return null;
+            });
+        } else if (event.getType() == SodaChangeType.CREATED) {
+            update(sodaDTO.getId(), level -> StockLevel.of(sodaDTO));
+        } else {
+            levelsById.computeIfPresent(sodaDTO.getId(), (id, level) -> {
+                StockLevel newLevel = level.adjust(event.getDelta());
+                levelsByRatio.remove(level);
+                levelsByRatio.add(newLevel);
+                return newLevel;
+            });
+        }
+    }
+
+    private void update(Long id, UnaryOperator<StockLevel> change) {
+        levelsById.compute(id, (key, level) -> {
+            StockLevel newLevel = change.apply(level);
+            if (level != null) {
+                levelsByRatio.remove(level);
+            }
+            levelsByRatio.add(newLevel);
+            return newLevel;
+        });
+    }
+}
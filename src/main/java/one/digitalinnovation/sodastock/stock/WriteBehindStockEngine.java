@@ -0,0 +1,317 @@
+package one.digitalinnovation.sodastock.stock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional write-behind mode for stock adjustments. When enabled, the quantities of the sodas that were
+ * adjusted live in memory and are written to the database in batches, every flush interval and on shutdown.
+ * A flush adds what changed since the previous flush, bounded like any other stock update, so it never
+ * overwrites changes made by other writers, and refreshes the reserved quantity of the counters it wrote. The
+ * deltas a flush writes are recorded in the stock ledger within the same transaction.
+ * <p>
+ * When another writer changed a row so that it no longer accepts the delta, the delta is applied to the
+ * current row as far as reserved..max allow and the soda is reloaded on its next adjustment. The units that
+ * cannot be written, and those of a soda deleted before its delta was flushed, are published as a compensating
+ * stock change, so the read sides drop what the table never got. Counters that went a whole flush interval
+ * without changes are evicted.
+ */
+@Slf4j
+@Component
+public class WriteBehindStockEngine {
+
+    private static final int REAPPLY_ATTEMPTS = 3;
+
+    private final boolean enabled;
+    private final SodaRepository sodaRepository;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+    private final SodaMapper sodaMapper = SodaMapper.INSTANCE;
+    private final Map<Long, StockCounter> countersById = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter rejectedRows;
+    private final Counter compensatedUnits;
+
+    @Autowired
+    public WriteBehindStockEngine(@Value("${sodastock.write-behind.enabled}") boolean enabled,
+                                  SodaRepository sodaRepository,
+                                  StockLedger stockLedger,
+                                  PlatformTransactionManager transactionManager,
+                                  ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry) {
+        this(enabled, sodaRepository, stockLedger, transactionManager, eventPublisher, meterRegistry, Clock.systemUTC());
+    }
+
+    WriteBehindStockEngine(boolean enabled,
+                           SodaRepository sodaRepository,
+                           StockLedger stockLedger,
+                           PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher eventPublisher,
+                           MeterRegistry meterRegistry,
+                           Clock clock) {
+        this.enabled = enabled;
+        this.sodaRepository = sodaRepository;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.flushTimer = meterRegistry.timer("sodastock.write-behind.flush");
+        this.flushedRows = meterRegistry.counter("sodastock.write-behind.flushed.rows");
+        this.rejectedRows = meterRegistry.counter("sodastock.write-behind.rejected.rows");
+        this.compensatedUnits = meterRegistry.counter("sodastock.write-behind.compensated.units");
+        Gauge.builder("sodastock.write-behind.lag", this, WriteBehindStockEngine::lagMillis)
+                .description("Age in milliseconds of the oldest stock change not written to the database yet")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("sodastock.write-behind.dirty", this, WriteBehindStockEngine::dirtyCount)
+                .description("Number of sodas with stock changes not written to the database yet")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public SodaDTO adjust(Long id, int delta) throws SodaNotFoundException, SodaStockExceededException {
+        while (true) {
+            StockCounter counter = counterOf(id);
+            int adjustedQuantity = counter.adjust(delta, clock.millis());
+            if (adjustedQuantity == StockCounter.STOCK_EXCEEDED) {
+                throw new SodaStockExceededException(id, Math.abs(delta));
+            }
+            if (adjustedQuantity != StockCounter.RETIRED) {
+                return counter.toDTO(adjustedQuantity);
+            }
+            countersById.remove(id, counter);
+        }
+    }
+
+    public Optional<Integer> quantityOf(Long id) {
+        StockCounter counter = countersById.get(id);
+        if (counter == null) {
+            return Optional.empty();
+        }
+        int quantity = counter.getQuantity();
+        return quantity == StockCounter.RETIRED ? Optional.empty() : Optional.of(quantity);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        if (event.getType() == SodaChangeType.DELETED) {
+            retireDeleted(event.getSoda().getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sodastock.write-behind.flush-interval}")
+    public void flush() {
+        if (countersById.isEmpty()) {
+            return;
+        }
+        flushTimer.record(this::flushDirtyCounters);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Runs under the flush lock, so a flush never writes a delta this retirement already compensated.
+     */
+    private synchronized void retireDeleted(Long id) {
+        StockCounter counter = countersById.remove(id);
+        if (counter != null) {
+            compensate(counter.toDTO(counter.getFlushedQuantity()), counter.retire());
+        }
+    }
+
+    private synchronized void flushDirtyCounters() {
+        List<StockCounter> counters = new ArrayList<>();
+        List<Long> dirtySinces = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        List<StockMovementDTO> movements = new ArrayList<>();
+        for (StockCounter counter : countersById.values()) {
+            long dirtySince = counter.markClean();
+            if (dirtySince == 0L) {
+                if (counter.retireIfFlushed()) {
+                    countersById.remove(counter.getId(), counter);
+                }
+                continue;
+            }
+            int quantity = counter.getQuantity();
+            int delta = counter.unflushedDelta(quantity);
+            if (quantity != StockCounter.RETIRED && delta != 0) {
+                counters.add(counter);
+                dirtySinces.add(dirtySince);
+                quantities.add(quantity);
+                movements.add(new StockMovementDTO(counter.getId(), delta));
+            }
+        }
+        if (movements.isEmpty()) {
+            return;
+        }
+
+        int[] updatedRows;
+        try {
+            updatedRows = transactionTemplate.execute(status -> {
+                int[] rows = sodaRepository.adjustQuantities(movements);
+                stockLedger.recordAll(appliedMovements(movements, rows));
+                return rows;
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not flush the stock of {} sodas, retrying on the next flush", movements.size(), e);
+            for (int i = 0; i < counters.size(); i++) {
+                counters.get(i).markDirty(dirtySinces.get(i));
+            }
+            return;
+        }
+        List<Long> flushedIds = new ArrayList<>();
+        for (int i = 0; i < counters.size(); i++) {
+            StockCounter counter = counters.get(i);
+            if (updatedRows[i] == 0) {
+                countersById.remove(counter.getId(), counter);
+                rejectedRows.increment();
+                reapply(counter, counter.retire());
+            } else {
+                counter.markFlushed(quantities.get(i));
+                flushedRows.increment();
+                flushedIds.add(counter.getId());
+            }
+        }
+        refreshReserved(flushedIds);
+    }
+
+    /**
+     * Writes the delta of a counter whose row rejected it, once the counter is retired. The row is read again
+     * and the delta is applied as far as its current reserved..max allow, guarded by the row version and
+     * retried when another writer gets in between. What does not fit is compensated.
+     */
+    private void reapply(StockCounter counter, int delta) {
+        SodaDTO lastSeenSoda = counter.toDTO(counter.getFlushedQuantity());
+        for (int attempt = 1; attempt <= REAPPLY_ATTEMPTS && delta != 0; attempt++) {
+            Optional<Soda> current = sodaRepository.findCurrentById(counter.getId());
+            if (!current.isPresent()) {
+                break;
+            }
+            Soda soda = current.get();
+            int quantity = Math.max(soda.getReserved(), Math.min(soda.getMax(), soda.getQuantity() + delta));
+            lastSeenSoda = sodaMapper.toDTO(soda);
+            if (quantity == soda.getQuantity() || writeReapplied(soda, quantity)) {
+                int appliedDelta = quantity - soda.getQuantity();
+                log.warn("Stock of soda {} changed outside the write-behind engine, applied {} of a delta of {}",
+                        soda.getId(), appliedDelta, delta);
+                lastSeenSoda.setQuantity(quantity);
+                delta -= appliedDelta;
+                break;
+            }
+        }
+        compensate(lastSeenSoda, delta);
+    }
+
+    private boolean writeReapplied(Soda soda, int quantity) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (sodaRepository.compareAndSetQuantity(soda.getId(), soda.getVersion(), quantity) == 0) {
+                return false;
+            }
+            stockLedger.record(soda.getId(), quantity - soda.getQuantity());
+            return true;
+        }));
+    }
+
+    private static List<StockMovementDTO> appliedMovements(List<StockMovementDTO> movements, int[] updatedRows) {
+        List<StockMovementDTO> appliedMovements = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            if (updatedRows[i] > 0) {
+                appliedMovements.add(movements.get(i));
+            }
+        }
+        return appliedMovements;
+    }
+
+    private void compensate(SodaDTO soda, int lostDelta) {
+        if (lostDelta == 0) {
+            return;
+        }
+        compensatedUnits.increment(Math.abs(lostDelta));
+        log.warn("Could not write a delta of {} to soda {}, publishing a compensating stock change", lostDelta, soda.getId());
+        eventPublisher.publishEvent(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, soda, -lostDelta));
+    }
+
+    private void refreshReserved(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            for (Soda soda : sodaRepository.findAllById(ids)) {
+                StockCounter counter = countersById.get(soda.getId());
+                if (counter != null) {
+                    counter.refreshReserved(soda.getReserved());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the reserved stock of {} sodas, keeping the previous values", ids.size(), e);
+        }
+    }
+
+    private StockCounter counterOf(Long id) throws SodaNotFoundException {
+        StockCounter counter = countersById.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        StockCounter loadedCounter = sodaRepository.findById(id)
+                .map(soda -> new StockCounter(sodaMapper.toDTO(soda), soda.getReserved()))
+                .orElseThrow(() -> new SodaNotFoundException(id));
+        StockCounter concurrentlyLoadedCounter = countersById.putIfAbsent(id, loadedCounter);
+        return concurrentlyLoadedCounter == null ? loadedCounter : concurrentlyLoadedCounter;
+    }
+
+    private double lagMillis() {
+        long now = clock.millis();
+        return countersById.values()
+                .stream()
+                .mapToLong(StockCounter::getDirtySince)
+                .filter(dirtySince -> dirtySince != 0L)
+                .map(dirtySince -> now - dirtySince)
+                .max()
+                .orElse(0L);
+    }
+
+    private double dirtyCount() {
+        return countersById.values()
+                .stream()
+                .filter(counter -> counter.getDirtySince() != 0L)
+                .count();
+    }
+}
@@ -0,0 +1,78 @@
+package one.digitalinnovation.sodastock.stream;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring of the latest stock events, numbered from 1 by a sequence that never wraps. Appends are
+ * serialized and overwrite the oldest slot; readers keep nothing but the sequence they want next and read
+ * without locking, finding out they fell behind when that slot already holds a newer event.
+ */
+public class StockEventRing {
+
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    private volatile long lastSequence;
+
+    public StockEventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    public synchronized long append(String name, String data) {
+        long sequence = lastSequence + 1;
+        slots.set((int) (sequence & mask), new Entry(sequence, name, data));
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Sequence of the latest event appended, 0 while the ring is empty.
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * The event with the given sequence, or null when it was already overwritten or not appended yet.
+     */
+    public Entry get(long sequence) {
+        if (sequence < 1 || sequence > lastSequence) {
+            return null;
+        }
+        Entry entry = slots.get((int) (sequence & mask));
+        return entry != null && entry.sequence == sequence ? entry : null;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public static final class Entry {
+
+        private final long sequence;
+        private final String name;
+        private final String data;
+
+        private Entry(long sequence, String name, String data) {
+            this.sequence = sequence;
+            this.name = name;
+            this.data = data;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package one.digitalinnovation.sodastock.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.sodastock.dto.StockChangeDTO;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes committed soda changes to Server-Sent Events subscribers. Every change is serialized once into a
+ * shared {@link StockEventRing}, so writers never wait on subscribers and a subscriber costs its emitter and
+ * the sequence it reads next. A dispatcher thread of its own walks the subscribers every dispatch interval
+ * and hands each one that is behind to a pool of sender threads, which sends it the events it has not seen,
+ * at most max-batch at a time; a subscriber that fell a whole ring behind gets a "resync" event, carrying the
+ * latest event id, and goes on from there. A subscriber has at most one send in flight, and at most
+ * sender-threads sends run at a time. A subscriber whose send has been running for longer than the send
+ * timeout is dropped and gives its place back right away, so a client that went away without closing keeps
+ * its blocked thread until the container gives up on the write, but no longer holds up the others.
+ * <p>
+ * Events carry the epoch of this stream and their sequence as SSE id, so a client reconnecting with
+ * Last-Event-ID resumes where it left off while the ring still holds that event. Sequences start over
+ * with every epoch, so an id from before a restart starts with a resync instead of being misread.
+ */
+@Slf4j
+@Component
+public class StockEventStream {
+
+    static final String RESYNC_EVENT = "resync";
+
+    private static final char EPOCH_SEPARATOR = '-';
+
+    private final StockEventRing ring;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final int maxBatch;
+    private final long dispatchIntervalMillis;
+    private final long heartbeatIntervalMillis;
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-event-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Executor senders;
+    private final Semaphore sendPermits;
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final Clock clock;
+    private final long sendTimeoutMillis;
+    private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+    private final Counter resyncs;
+    private final Counter stalls;
+
+    @Autowired
+    public StockEventStream(ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${sodastock.stream.capacity}") int capacity,
+                            @Value("${sodastock.stream.max-batch}") int maxBatch,
+                            @Value("${sodastock.stream.dispatch-interval}") long dispatchIntervalMillis,
+                            @Value("${sodastock.stream.heartbeat-interval}") long heartbeatIntervalMillis,
+                            @Value("${sodastock.stream.timeout}") Duration timeout,
+                            @Value("${sodastock.stream.sender-threads}") int senderThreads,
+                            @Value("${sodastock.stream.send-timeout}") Duration sendTimeout) {
+        this(objectMapper, meterRegistry, capacity, maxBatch, dispatchIntervalMillis, heartbeatIntervalMillis, timeout,
+                sendTimeout, senderThreads, Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "stock-event-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                }), Clock.systemUTC());
+    }
+
+    StockEventStream(ObjectMapper objectMapper,
+                     MeterRegistry meterRegistry,
+                     int capacity,
+                     int maxBatch,
+                     long dispatchIntervalMillis,
+                     long heartbeatIntervalMillis,
+                     Duration timeout,
+                     Duration sendTimeout,
+                     int senderThreads,
+                     Executor senders,
+                     Clock clock) {
+        this.ring = new StockEventRing(capacity);
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxBatch = maxBatch;
+        this.dispatchIntervalMillis = dispatchIntervalMillis;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.sendTimeoutMillis = sendTimeout.toMillis();
+        this.senders = senders;
+        this.sendPermits = new Semaphore(senderThreads);
+        this.clock = clock;
+        this.resyncs = meterRegistry.counter("sodastock.stream.resyncs");
+        this.stalls = meterRegistry.counter("sodastock.stream.stalls");
+        Gauge.builder("sodastock.stream.subscribers", subscribers, Queue::size)
+                .description("Number of clients subscribed to the stock change stream")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher.scheduleWithFixedDelay(this::dispatch, dispatchIntervalMillis, dispatchIntervalMillis, TimeUnit.MILLISECONDS);
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes to the changes committed from now on or, given the id of the last event received, to
+     * the ones after it. An id the ring no longer holds, or one from before a restart, starts with a resync.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(timeoutMillis), lastEventId);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        long lastSequence = ring.lastSequence();
+        Subscriber subscriber = new Subscriber(emitter, lastSequence + 1);
+        if (lastEventId != null) {
+            long lastEventSequence = sequenceOf(lastEventId);
+            if (lastEventSequence >= 0 && lastEventSequence < lastSequence && ring.get(lastEventSequence + 1) != null) {
+                subscriber.nextSequence = lastEventSequence + 1;
+            } else if (lastEventSequence != lastSequence) {
+                subscriber.resyncPending = true;
+            }
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    String eventId(long sequence) {
+        return epoch + EPOCH_SEPARATOR + sequence;
+    }
+
+    /**
+     * Sequence of an event id of this epoch, -1 when the id is malformed or from another epoch.
+     */
+    private long sequenceOf(String eventId) {
+        int separator = eventId.lastIndexOf(EPOCH_SEPARATOR);
+        if (separator < 0 || !epoch.equals(eventId.substring(0, separator))) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSodaChanged(SodaChangedEvent event) {
+        StockChangeDTO stockChangeDTO = new StockChangeDTO(event.getType(), event.getDelta(), event.getSoda());
+        try {
+            ring.append(event.getType().name().toLowerCase(Locale.ROOT), objectMapper.writeValueAsString(stockChangeDTO));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize the stock change of soda {} for the stream", event.getSoda().getId(), e);
+        }
+    }
+
+    void dispatch() {
+        long lastSequence = ring.lastSequence();
+        for (Subscriber subscriber : subscribers) {
+            if (!dropIfStalled(subscriber) && (subscriber.resyncPending || subscriber.nextSequence <= lastSequence)) {
+                submit(subscriber, subscriber::catchUp);
+            }
+        }
+    }
+
+    /**
+     * Keeps idle connections open through proxies and finds the clients that went away without closing.
+     */
+    void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (!dropIfStalled(subscriber)) {
+                submit(subscriber, () -> subscriber.emitter.send(SseEmitter.event().comment("")));
+            }
+        }
+    }
+
+    /**
+     * Hands a send to the sender pool unless the subscriber already has one in flight or every send permit
+     * is taken, in which case a later dispatch or heartbeat tries again.
+     */
+    private void submit(Subscriber subscriber, Send send) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        if (!sendPermits.tryAcquire()) {
+            subscriber.sending.set(false);
+            return;
+        }
+        subscriber.holdsPermit.set(true);
+        senders.execute(() -> {
+            subscriber.sendingSince = clock.millis();
+            try {
+                send.run();
+            } catch (IOException | RuntimeException e) {
+                subscriber.failure = e;
+                subscribers.remove(subscriber);
+            } finally {
+                subscriber.sendingSince = 0L;
+                releasePermit(subscriber);
+                subscriber.sending.set(false);
+            }
+            if (subscriber.failure != null) {
+                completeWithError(subscriber);
+            }
+        });
+    }
+
+    /**
+     * Drops a subscriber whose send has run for longer than the send timeout and hands its send permit to
+     * the others. Its emitter is locked by the blocked send, so the sender completes it once the send
+     * returns instead of the dispatcher waiting here.
+     */
+    private boolean dropIfStalled(Subscriber subscriber) {
+        long sendingSince = subscriber.sendingSince;
+        if (sendingSince == 0L || clock.millis() - sendingSince <= sendTimeoutMillis) {
+            return false;
+        }
+        subscriber.failure = new TimeoutException("No send completed within " + sendTimeoutMillis + " ms");
+        if (subscribers.remove(subscriber)) {
+            stalls.increment();
+            releasePermit(subscriber);
+            if (!subscriber.sending.get()) {
+                completeWithError(subscriber);
+            }
+        }
+        return true;
+    }
+
+    private void releasePermit(Subscriber subscriber) {
+        if (subscriber.holdsPermit.compareAndSet(true, false)) {
+            sendPermits.release();
+        }
+    }
+
+    private static void completeWithError(Subscriber subscriber) {
+        log.debug("Dropped a stock event stream subscriber", subscriber.failure);
+        subscriber.emitter.completeWithError(subscriber.failure);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        if (senders instanceof ExecutorService) {
+            ((ExecutorService) senders).shutdownNow();
+        }
+        Subscriber subscriber;
+        while ((subscriber = subscribers.poll()) != null) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean holdsPermit = new AtomicBoolean();
+        private volatile long sendingSince;
+        private volatile Exception failure;
+        private volatile long nextSequence;
+        private volatile boolean resyncPending;
+
+        private Subscriber(SseEmitter emitter, long nextSequence) {
+            this.emitter = emitter;
+            this.nextSequence = nextSequence;
+        }
+
+        private void catchUp() throws IOException {
+            long lastSequence = ring.lastSequence();
+            for (int sent = 0; sent < maxBatch && (resyncPending || nextSequence <= lastSequence); sent++) {
+                StockEventRing.Entry entry = resyncPending ? null : ring.get(nextSequence);
+                if (entry == null) {
+                    resync();
+                    return;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(eventId(entry.getSequence()))
+                        .name(entry.getName())
+                        .data(entry.getData(), MediaType.APPLICATION_JSON));
+                nextSequence++;
+            }
+        }
+
+        private void resync() throws IOException {
+            long lastSequence = ring.lastSequence();
+            emitter.send(SseEmitter.event()
+                    .id(eventId(lastSequence))
+                    .name(RESYNC_EVENT)
+                    .data(eventId(lastSequence)));
+            nextSequence = lastSequence + 1;
+            resyncPending = false;
+            resyncs.increment();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Send {
+
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,128 @@
+package one.digitalinnovation.sodastock.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+
+    private static final int FOLLOWERS = 8;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SingleFlight singleFlight;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry);
+        executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void whenIdenticalLookupsOverlapThenTheyShareOneLoad() throws Exception {
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        SharedLookup<String, RuntimeException> lookup = () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "Guarana";
+        };
+
+        List<Future<String>> results = startOverlappingLookups(lookup);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS), equalTo("Guarana"));
+        }
+        assertThat(loads.get(), equalTo(1));
+        assertThat(callsOf("led"), equalTo(1.0));
+        assertThat(callsOf("joined"), equalTo((double) FOLLOWERS));
+    }
+
+    @Test
+    void whenSharedLoadFailsThenEveryCallerGetsTheException() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        SharedLookup<String, SodaNotFoundException> lookup = () -> {
+            await(release);
+            throw new SodaNotFoundException("Guarana");
+        };
+
+        List<Future<String>> results = startOverlappingLookups(lookup);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertThat(thrown.getCause(), instanceOf(SodaNotFoundException.class));
+        }
+    }
+
+    @Test
+    void whenLookupHasFinishedThenTheNextCallLoadsAgain() {
+
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("findByName", "Guarana", loads::incrementAndGet);
+        singleFlight.execute("findByName", "Guarana", loads::incrementAndGet);
+
+        assertThat(loads.get(), equalTo(2));
+        assertThat(callsOf("joined"), equalTo(0.0));
+    }
+
+    private <E extends Exception> List<Future<String>> startOverlappingLookups(SharedLookup<String, E> lookup) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute("findByName", "Guarana", lookup)));
+        waitUntil(() -> callsOf("led") == 1.0);
+        for (int i = 0; i < FOLLOWERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("findByName", "Guarana", lookup)));
+        }
+        waitUntil(() -> callsOf("joined") == FOLLOWERS);
+        return results;
+    }
+
+    private double callsOf(String role) {
+        return meterRegistry.counter("sodastock.single-flight.calls", "operation", "findByName", "role", role).count();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package one.digitalinnovation.sodastock.cache;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.codec.SodaBinaryCodec;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class SodaVersionsTest {
+
+    private static final MediaType JSON = MediaType.APPLICATION_JSON;
+
+    private final SodaVersions sodaVersions = new SodaVersions(1_000L);
+
+    @Test
+    void whenNothingChangedThenETagsAreStable() {
+
+        assertThat(sodaVersions.catalogETag(JSON), equalTo(sodaVersions.catalogETag(JSON)));
+        assertThat(sodaVersions.sodaETag("Coca-Cola", JSON), equalTo(sodaVersions.sodaETag("Coca-Cola", JSON)));
+    }
+
+    @Test
+    void whenRepresentationsDifferThenTheirETagsDiffer() {
+
+        assertThat(sodaVersions.catalogETag(SodaBinaryCodec.MEDIA_TYPE), not(equalTo(sodaVersions.catalogETag(JSON))));
+        assertThat(sodaVersions.sodaETag("Coca-Cola", SodaBinaryCodec.MEDIA_TYPE), not(equalTo(sodaVersions.sodaETag("Coca-Cola", JSON))));
+    }
+
+    @Test
+    void whenSodaChangesThenItsETagAndTheCatalogETagChange() {
+
+        SodaDTO changedSoda = SodaDTOBuilder.builder().build().toSodaDTO();
+        String catalogETag = sodaVersions.catalogETag(JSON);
+        String sodaETag = sodaVersions.sodaETag(changedSoda.getName(), JSON);
+        String otherSodaETag = sodaVersions.sodaETag("Guarana", JSON);
+
+        sodaVersions.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, changedSoda, 1));
+
+        assertThat(sodaVersions.catalogETag(JSON), not(equalTo(catalogETag)));
+        assertThat(sodaVersions.sodaETag(changedSoda.getName(), JSON), not(equalTo(sodaETag)));
+        assertThat(sodaVersions.sodaETag("Guarana", JSON), equalTo(otherSodaETag));
+    }
+
+    @Test
+    void whenSodaIsDeletedAndCreatedAgainThenTheETagFromBeforeTheDeletionNeverMatches() {
+
+        SodaDTO deletedSoda = SodaDTOBuilder.builder().build().toSodaDTO();
+        String unchangedSodaETag = sodaVersions.sodaETag(deletedSoda.getName(), JSON);
+        String otherSodaETag = sodaVersions.sodaETag("Guarana", JSON);
+
+        sodaVersions.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, deletedSoda, -deletedSoda.getQuantity()));
+        int trackedNamesAfterDeletion = sodaVersions.trackedNames();
+        sodaVersions.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, deletedSoda, deletedSoda.getQuantity()));
+
+        assertThat(trackedNamesAfterDeletion, equalTo(0));
+        assertThat(sodaVersions.sodaETag(deletedSoda.getName(), JSON), not(equalTo(unchangedSodaETag)));
+        assertThat(sodaVersions.sodaETag("Guarana", JSON), equalTo(otherSodaETag));
+    }
+
+    @Test
+    void whenApplicationRestartsThenPreviousETagsNoLongerMatch() {
+
+        assertThat(new SodaVersions(2_000L).catalogETag(JSON), not(equalTo(sodaVersions.catalogETag(JSON))));
+    }
+}
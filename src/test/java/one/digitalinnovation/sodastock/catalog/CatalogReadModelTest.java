@@ -0,0 +1,206 @@
+package one.digitalinnovation.sodastock.catalog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogReadModelTest {
+
+    private static final Duration MAX_STALENESS = Duration.ofSeconds(30);
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private WriteBehindStockEngine stockEngine;
+
+    @Mock
+    private Clock clock;
+
+    @Test
+    void whenLoadedThenEveryPageOfTheTableIsInTheSnapshot() {
+
+        SodaDTO firstSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").build().toSodaDTO();
+        SodaDTO secondSoda = SodaDTOBuilder.builder().id(2L).name("Tubaina").build().toSodaDTO();
+        when(sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, 1000))).thenReturn(Collections.singletonList(firstSoda));
+        when(sodaRepository.findDTOsByIdGreaterThan(1L, PageRequest.of(0, 1000))).thenReturn(Collections.singletonList(secondSoda));
+        when(sodaRepository.findDTOsByIdGreaterThan(2L, PageRequest.of(0, 1000))).thenReturn(Collections.emptyList());
+
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+        catalogReadModel.load();
+
+        assertThat(catalogReadModel.snapshot().page(0L, 10, null), contains(firstSoda, secondSoda));
+    }
+
+    @Test
+    void whenSodasChangeThenTheSnapshotIsUpdatedInPlace() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).build().toSodaDTO();
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+        CatalogSnapshot created = catalogReadModel.snapshot();
+        SodaDTO createdSoda = created.findByName("Guarana").get();
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, -4));
+
+        assertThat(catalogReadModel.snapshot(), sameInstance(created));
+        assertThat(created.findByName("Guarana").map(SodaDTO::getQuantity), equalTo(Optional.of(6)));
+        assertThat(createdSoda.getQuantity(), equalTo(10));
+
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, sodaDTO, -6));
+
+        assertThat(catalogReadModel.snapshot().findByName("Guarana"), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void whenEventsOfADeletedSodaArriveAfterTheDeletionThenTheSodaStaysDeleted() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).build().toSodaDTO();
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, sodaDTO, -10));
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, 2));
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+
+        assertThat(catalogReadModel.snapshot().findById(1L), equalTo(Optional.empty()));
+        assertThat(catalogReadModel.snapshot().size(), equalTo(0));
+    }
+
+    @Test
+    void whenAStockChangeArrivesBeforeTheCreationThenTheCreatedSodaIncludesIt() {
+
+        SodaDTO createdSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).build().toSodaDTO();
+        SodaDTO changedSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(13).build().toSodaDTO();
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, changedSoda, 3));
+        assertThat(catalogReadModel.snapshot().findById(1L), equalTo(Optional.empty()));
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, createdSoda, 10));
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, createdSoda, 10));
+
+        assertThat(catalogReadModel.snapshot().findById(1L).map(SodaDTO::getQuantity), equalTo(Optional.of(13)));
+    }
+
+    @Test
+    void whenTheTableDisagreesWithTheSnapshotThenStalenessGrowsUntilTheyAgreeAgain() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).size(SodaSize.BIG).build().toSodaDTO();
+        when(clock.millis()).thenReturn(1_000L);
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS, clock);
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+
+        when(sodaRepository.aggregateBySize()).thenReturn(Collections.emptyList());
+        when(clock.millis()).thenReturn(4_000L);
+        catalogReadModel.verify();
+
+        assertThat(catalogReadModel.stalenessMillis(), equalTo(3_000.0));
+
+        when(sodaRepository.aggregateBySize()).thenReturn(Collections.singletonList(new SodaSizeAggregateDTO(SodaSize.BIG, 1L, 10L)));
+        catalogReadModel.verify();
+
+        assertThat(catalogReadModel.stalenessMillis(), equalTo(0.0));
+    }
+
+    @Test
+    void whenTheTableDisagreesForLongerThanTheMaxStalenessThenTheSnapshotIsReloaded() {
+
+        SodaDTO driftedSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).size(SodaSize.BIG).build().toSodaDTO();
+        SodaDTO tableSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(7).size(SodaSize.BIG).build().toSodaDTO();
+        when(clock.millis()).thenReturn(1_000L);
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS, clock);
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, driftedSoda, 10));
+        when(sodaRepository.aggregateBySize()).thenReturn(Collections.singletonList(new SodaSizeAggregateDTO(SodaSize.BIG, 1L, 7L)));
+
+        when(clock.millis()).thenReturn(31_000L);
+        catalogReadModel.verify();
+        assertThat(catalogReadModel.snapshot().findById(1L).map(SodaDTO::getQuantity), equalTo(Optional.of(10)));
+
+        when(sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, 1000))).thenReturn(Collections.singletonList(tableSoda));
+        when(sodaRepository.findDTOsByIdGreaterThan(1L, PageRequest.of(0, 1000))).thenReturn(Collections.emptyList());
+        when(clock.millis()).thenReturn(31_001L);
+        catalogReadModel.verify();
+
+        assertThat(catalogReadModel.snapshot().findById(1L).map(SodaDTO::getQuantity), equalTo(Optional.of(7)));
+        assertThat(catalogReadModel.stalenessMillis(), equalTo(0.0));
+    }
+
+    @Test
+    void whenAChangeInTheRowsReadIsDeliveredAfterAReloadThenItIsAppliedOnce() {
+
+        SodaDTO changedSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).size(SodaSize.BIG).build().toSodaDTO();
+        SodaDTO otherSoda = SodaDTOBuilder.builder().id(2L).name("Tubaina").quantity(4).size(SodaSize.BIG).build().toSodaDTO();
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, changedSoda, 10));
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, otherSoda, 4));
+        SodaChangedEvent committedChange = new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, changedSoda, 3);
+        catalogReadModel.onSodaChangePublished(committedChange);
+
+        SodaDTO changedRow = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(13).size(SodaSize.BIG).build().toSodaDTO();
+        SodaDTO otherRow = SodaDTOBuilder.builder().id(2L).name("Tubaina").quantity(6).size(SodaSize.BIG).build().toSodaDTO();
+        when(sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, 1000))).thenReturn(Arrays.asList(changedRow, otherRow));
+        when(sodaRepository.findDTOsByIdGreaterThan(2L, PageRequest.of(0, 1000))).thenReturn(Collections.emptyList());
+        catalogReadModel.load();
+        catalogReadModel.onSodaChanged(committedChange);
+
+        assertThat(catalogReadModel.snapshot().findById(1L).map(SodaDTO::getQuantity), equalTo(Optional.of(13)));
+        assertThat(catalogReadModel.snapshot().findById(2L).map(SodaDTO::getQuantity), equalTo(Optional.of(6)));
+    }
+
+    @Test
+    void whenAPublishedChangeIsRolledBackThenTheNextReloadTakesItsSodaFromTheTable() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).size(SodaSize.BIG).build().toSodaDTO();
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS);
+        catalogReadModel.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+        SodaChangedEvent rolledBackChange = new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, 3);
+        catalogReadModel.onSodaChangePublished(rolledBackChange);
+        catalogReadModel.onSodaChangeRolledBack(rolledBackChange);
+
+        SodaDTO tableSoda = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(7).size(SodaSize.BIG).build().toSodaDTO();
+        when(sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, 1000))).thenReturn(Collections.singletonList(tableSoda));
+        when(sodaRepository.findDTOsByIdGreaterThan(1L, PageRequest.of(0, 1000))).thenReturn(Collections.emptyList());
+        catalogReadModel.load();
+
+        assertThat(catalogReadModel.snapshot().findById(1L).map(SodaDTO::getQuantity), equalTo(Optional.of(7)));
+    }
+
+    @Test
+    void whenWriteBehindIsOnThenTheTableIsNotComparedAndTheSnapshotIsNotReloaded() {
+
+        when(stockEngine.isEnabled()).thenReturn(true);
+        when(clock.millis()).thenReturn(1_000L);
+        CatalogReadModel catalogReadModel = new CatalogReadModel(sodaRepository, stockEngine, new SimpleMeterRegistry(), MAX_STALENESS, clock);
+
+        when(clock.millis()).thenReturn(61_000L);
+        catalogReadModel.verify();
+
+        assertThat(catalogReadModel.stalenessMillis(), equalTo(0.0));
+        verifyNoInteractions(sodaRepository);
+    }
+}
@@ -0,0 +1,75 @@
+package one.digitalinnovation.sodastock.catalog;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CatalogSnapshotTest {
+
+    private final SodaDTO guarana = SodaDTOBuilder.builder().id(1L).name("Guarana").quantity(10).size(SodaSize.BIG).build().toSodaDTO();
+    private final SodaDTO tubaina = SodaDTOBuilder.builder().id(2L).name("Tubaina").quantity(5).size(SodaSize.SMALL).build().toSodaDTO();
+    private final SodaDTO mineiro = SodaDTOBuilder.builder().id(3L).name("Mineiro").quantity(7).size(SodaSize.BIG).build().toSodaDTO();
+
+    @Test
+    void whenPagedThenSodasAfterTheIdAreReturnedInIdOrderAsAReadOnlyList() {
+
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(mineiro, guarana, tubaina));
+
+        List<SodaDTO> page = snapshot.page(1L, 10, null);
+
+        assertThat(page, contains(tubaina, mineiro));
+        assertThat(snapshot.page(0L, 1, SodaSize.BIG), contains(guarana));
+        assertThat(snapshot.page(1L, 10, SodaSize.BIG), contains(mineiro));
+        assertThat(snapshot.page(3L, 10, null), empty());
+        assertThrows(UnsupportedOperationException.class, () -> page.set(0, guarana));
+    }
+
+    @Test
+    void whenWritesAreAppliedThenTheSnapshotHoldsThemAndPagesAlreadyReadAreUnchanged() {
+
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(guarana, tubaina));
+        List<SodaDTO> pageBefore = snapshot.page(0L, 10, null);
+
+        snapshot.applyStockDelta(1L, 5);
+        snapshot.put(mineiro);
+        snapshot.remove(2L);
+
+        assertThat(snapshot.findByName("Guarana").map(SodaDTO::getQuantity), equalTo(Optional.of(15)));
+        assertThat(snapshot.page(0L, 10, SodaSize.BIG).get(0).getQuantity(), equalTo(15));
+        assertThat(snapshot.findByName("Mineiro"), equalTo(Optional.of(mineiro)));
+        assertThat(snapshot.findByName("Tubaina"), equalTo(Optional.empty()));
+        assertThat(snapshot.size(), equalTo(2));
+        assertThat(snapshot.aggregates(), containsInAnyOrder(new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 22L)));
+        assertThat(pageBefore, contains(guarana, tubaina));
+        assertThat(pageBefore.get(0).getQuantity(), equalTo(10));
+    }
+
+    @Test
+    void whenASodaIsPutAgainThenItReplacesTheOldOneInEveryIndex() {
+
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(guarana, tubaina));
+        SodaDTO renamed = SodaDTOBuilder.builder().id(1L).name("Guarana Zero").quantity(3).size(SodaSize.SMALL).build().toSodaDTO();
+
+        snapshot.put(renamed);
+
+        assertThat(snapshot.findByName("Guarana"), equalTo(Optional.empty()));
+        assertThat(snapshot.findByName("Guarana Zero"), equalTo(Optional.of(renamed)));
+        assertThat(snapshot.page(0L, 10, SodaSize.BIG), empty());
+        assertThat(snapshot.page(0L, 10, SodaSize.SMALL), contains(renamed, tubaina));
+        assertThat(snapshot.size(), equalTo(2));
+        assertThat(snapshot.aggregates(), containsInAnyOrder(new SodaSizeAggregateDTO(SodaSize.SMALL, 2L, 8L)));
+    }
+}
@@ -0,0 +1,51 @@
+package one.digitalinnovation.sodastock.codec;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SodaBinaryCodecTest {
+
+    @Test
+    void whenSodasAreEncodedThenTheyAreDecodedBackEqual() throws InvalidBinaryBodyException {
+        List<SodaDTO> sodaDTOs = Arrays.asList(
+                SodaDTOBuilder.builder().build().toSodaDTO(),
+                SodaDTOBuilder.builder().id(Long.MAX_VALUE).name("Guaraná Jesus").max(500).quantity(0).size(SodaSize.VERYSMALL).build().toSodaDTO());
+
+        byte[] bytes = SodaBinaryCodec.encodeSodas(sodaDTOs);
+
+        assertThat(bytes.length, equalTo(4 + (19 + 7) + (19 + 14)));
+        assertThat(SodaBinaryCodec.decodeSodas(ByteBuffer.wrap(bytes)), equalTo(sodaDTOs));
+    }
+
+    @Test
+    void whenQuantityIsOutOfRangeThenDecodingIsRejected() throws InvalidBinaryBodyException {
+
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeQuantity(ByteBuffer.wrap(new byte[]{0, 0, 0, 101})));
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeQuantity(ByteBuffer.wrap(new byte[]{0, 0, 0, 0})));
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeQuantity(ByteBuffer.allocate(4).putInt(0, -5)));
+        assertThat(SodaBinaryCodec.decodeQuantity(ByteBuffer.wrap(SodaBinaryCodec.encodeQuantity(new QuantityDTO(1)))), equalTo(new QuantityDTO(1)));
+        assertThat(SodaBinaryCodec.decodeQuantity(ByteBuffer.wrap(SodaBinaryCodec.encodeQuantity(new QuantityDTO(100)))), equalTo(new QuantityDTO(100)));
+    }
+
+    @Test
+    void whenBodyIsTruncatedOrHasAnUnknownSizeThenDecodingIsRejected() throws InvalidBinaryBodyException {
+        byte[] soda = SodaBinaryCodec.encodeSoda(SodaDTOBuilder.builder().build().toSodaDTO());
+
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeSoda(ByteBuffer.wrap(Arrays.copyOf(soda, soda.length - 1))));
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeSodas(ByteBuffer.wrap(new byte[]{0, 0, 0, 2, 0})));
+
+        soda[16] = (byte) SodaSize.values().length;
+        assertThrows(InvalidBinaryBodyException.class, () -> SodaBinaryCodec.decodeSoda(ByteBuffer.wrap(soda)));
+    }
+}
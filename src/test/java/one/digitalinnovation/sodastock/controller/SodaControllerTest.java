@@ -1,31 +1,79 @@
 package one.digitalinnovation.sodastock.controller;
 
 import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.cache.SodaVersions;
+import one.digitalinnovation.sodastock.codec.SodaBinaryCodec;
+import one.digitalinnovation.sodastock.codec.SodaBinaryHttpMessageConverter;
+import one.digitalinnovation.sodastock.config.LongRunningRequestTimeout;
 import one.digitalinnovation.sodastock.dto.QuantityDTO;
+import one.digitalinnovation.sodastock.dto.ReservationDTO;
+import one.digitalinnovation.sodastock.dto.ReservationRequestDTO;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportErrorDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportReportDTO;
+import one.digitalinnovation.sodastock.dto.SodaPageDTO;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementBatchDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementResultDTO;
+import one.digitalinnovation.sodastock.dto.StockQuantityAtDTO;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.enums.StockMovementStatus;
+import one.digitalinnovation.sodastock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.InvalidStockThresholdException;
+import one.digitalinnovation.sodastock.exception.ReservationNotFoundException;
 import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
 import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.idempotency.IdempotencyStore;
+import one.digitalinnovation.sodastock.service.ReservationService;
+import one.digitalinnovation.sodastock.service.SodaExportService;
+import one.digitalinnovation.sodastock.service.SodaImportService;
 import one.digitalinnovation.sodastock.service.SodaService;
+import one.digitalinnovation.sodastock.service.StockHistoryService;
+import one.digitalinnovation.sodastock.stream.StockEventStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 
 import static one.digitalinnovation.sodastock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,12 +84,47 @@ public class SodaControllerTest {
     private static final long INVALID_SODA_ID = 2l;
     private static final String SODA_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String SODA_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String SODA_API_SUBPATH_STOCK_URL = "/stock";
+    private static final String SODA_API_SUBPATH_EXPORT_URL = "/export";
+    private static final String SODA_API_SUBPATH_STOCK_LEVELS_URL = "/stock-levels";
+    private static final String SODA_API_SUBPATH_AGGREGATES_URL = "/aggregates";
+    private static final String SODA_API_SUBPATH_SEARCH_URL = "/search";
+    private static final String SODA_API_SUBPATH_RESERVATIONS_URL = "/reservations";
+    private static final String SODA_API_SUBPATH_STREAM_URL = "/stream";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+    private static final String SODA_API_SUBPATH_IMPORT_URL = "/import";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String SODA_ETAG = "\"kz1-3\"";
+    private static final String CATALOG_ETAG = "\"kz1-9\"";
 
     private MockMvc mockMvc;
 
     @Mock
     private SodaService sodaService;
 
+    @Mock
+    private SodaExportService sodaExportService;
+
+    @Mock
+    private SodaImportService sodaImportService;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private StockHistoryService stockHistoryService;
+
+    @Mock
+    private SodaVersions sodaVersions;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private StockEventStream stockEventStream;
+
     @InjectMocks
     private SodaController sodaController;
 
@@ -83,13 +166,25 @@ public class SodaControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenPOSTIsCalledWithANameReservedForAnApiPathThenAnErrorIsReturned() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().name("export").build().toSodaDTO();
+
+        mockMvc.perform(post(SODA_API_URL_PATH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(sodaDTO)))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(sodaService);
+    }
+
     @Test
     void whenGETIsCalledWithValidNameThenOkStatusIsReturned() throws Exception {
 
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
 
-        when(sodaService.findByName(sodaDTO.getName())).thenReturn(sodaDTO);
+        when(sodaService.tryFindByName(sodaDTO.getName())).thenReturn(SodaResultDTO.ok(sodaDTO));
 
 
         mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + sodaDTO.getName())
@@ -105,12 +200,65 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
 
-        when(sodaService.findByName(sodaDTO.getName())).thenThrow(SodaNotFoundException.class);
+        when(sodaVersions.sodaETag(sodaDTO.getName(), MediaType.APPLICATION_JSON)).thenReturn(SODA_ETAG);
+        when(sodaService.tryFindByName(sodaDTO.getName())).thenReturn(SodaResultDTO.notFound());
 
 
         mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + sodaDTO.getName())
-                        .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isNotFound());
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, SODA_ETAG))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(result -> assertThat(result.getResolvedException(), instanceOf(SodaNotFoundException.class)));
+    }
+
+    @Test
+    void whenGETIsCalledWithCurrentETagThenNotModifiedStatusIsReturned() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+
+        when(sodaVersions.sodaETag(sodaDTO.getName(), MediaType.APPLICATION_JSON)).thenReturn(SODA_ETAG);
+        when(sodaService.tryFindByName(sodaDTO.getName())).thenReturn(SodaResultDTO.ok(sodaDTO));
+
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + sodaDTO.getName())
+                        .header(HttpHeaders.IF_NONE_MATCH, SODA_ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, SODA_ETAG))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void whenGETIsCalledWithStaleETagThenSodaIsReturnedWithCurrentETag() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+
+        when(sodaVersions.sodaETag(sodaDTO.getName(), MediaType.APPLICATION_JSON)).thenReturn(SODA_ETAG);
+        when(sodaService.tryFindByName(sodaDTO.getName())).thenReturn(SodaResultDTO.ok(sodaDTO));
+
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + sodaDTO.getName())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, SODA_ETAG))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(jsonPath("$.name", is(sodaDTO.getName())));
+    }
+
+    @Test
+    void whenGETListIsCalledWithCurrentCatalogETagThenNotModifiedStatusIsReturned() throws Exception {
+
+        when(sodaVersions.catalogETag(MediaType.APPLICATION_JSON)).thenReturn(CATALOG_ETAG);
+
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
+                        .header(HttpHeaders.IF_NONE_MATCH, CATALOG_ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG));
+        verifyNoInteractions(sodaService);
     }
 
     @Test
@@ -119,12 +267,13 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
 
-        when(sodaService.listAll()).thenReturn(Collections.singletonList(sodaDTO));
+        when(sodaService.listPage(null, 50, null)).thenReturn(new SodaPageDTO(Collections.singletonList(sodaDTO), null));
 
 
         mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
                 .andExpect(jsonPath("$[0].name", is(sodaDTO.getName())))
                 .andExpect(jsonPath("$[0].size", is(sodaDTO.getSize().toString())));
     }
@@ -132,15 +281,105 @@ public class SodaControllerTest {
     @Test
     void whenGETListWithoutSodasIsCalledThenOkStatusIsReturned() throws Exception {
 
+        when(sodaService.listPage(null, 50, null)).thenReturn(new SodaPageDTO(Collections.emptyList(), null));
+
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void whenGETListWithCursorAndSizeIsCalledThenNextCursorHeaderIsReturned() throws Exception {
+
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
 
-        when(sodaService.listAll()).thenReturn(Collections.singletonList(sodaDTO));
+        when(sodaService.listPage("MQ", 1, SodaSize.BIG)).thenReturn(new SodaPageDTO(Collections.singletonList(sodaDTO), "Mg"));
 
 
         mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
+                        .param("cursor", "MQ")
+                        .param("limit", "1")
+                        .param("size", SodaSize.BIG.toString())
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, "Mg"))
+                .andExpect(jsonPath("$[0].name", is(sodaDTO.getName())));
+    }
+
+    @Test
+    void whenGETListWithInvalidCursorIsCalledThenBadRequestStatusIsReturned() throws Exception {
+
+        when(sodaService.listPage("invalid", 50, null)).thenThrow(InvalidCursorException.class);
+
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
+                        .param("cursor", "invalid")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPOSTImportIsCalledWithCsvThenTheImportReportIsReturned() throws Exception {
+
+        SodaImportReportDTO report = SodaImportReportDTO.builder()
+                .imported(1L)
+                .rejected(1L)
+                .errors(Collections.singletonList(new SodaImportErrorDTO(3L, "Fanta", "quantity must be less than or equal to 100")))
+                .build();
+
+
+        when(sodaImportService.importCsv(ArgumentMatchers.any(InputStream.class))).thenReturn(report);
+
+
+        mockMvc.perform(post(SODA_API_URL_PATH + SODA_API_SUBPATH_IMPORT_URL)
+                        .contentType(CSV_MEDIA_TYPE)
+                        .content("name,max,quantity,size\nMineiro,50,10,BIG\nFanta,50,200,BIG\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)))
+                .andExpect(jsonPath("$.errors[0].name", is("Fanta")));
+    }
+
+    @Test
+    void whenPOSTImportIsCalledWithNdjsonThenNdjsonIsImported() throws Exception {
+
+        when(sodaImportService.importNdjson(ArgumentMatchers.any(InputStream.class))).thenReturn(SodaImportReportDTO.builder().imported(2L).build());
+
+
+        mockMvc.perform(post(SODA_API_URL_PATH + SODA_API_SUBPATH_IMPORT_URL)
+                        .contentType(NDJSON_MEDIA_TYPE)
+                        .content("{}\n{}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)));
+        verify(sodaImportService, never()).importCsv(ArgumentMatchers.any(InputStream.class));
+    }
+
+    @Test
+    void whenGETExportIsCalledThenSodasAreStreamedAsNdjson() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(0);
+            outputStream.write((asJsonString(sodaDTO) + "\n").getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(sodaExportService).exportAll(any(OutputStream.class));
+
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_EXPORT_URL))
+                .andExpect(request().asyncStarted())
+                .andExpect(request().attribute(LongRunningRequestTimeout.LONG_RUNNING_ATTRIBUTE, true))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NDJSON_MEDIA_TYPE))
+                .andExpect(content().string(asJsonString(sodaDTO) + "\n"));
     }
 
     @Test
@@ -168,6 +407,82 @@ public class SodaControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenGETSearchIsCalledThenMatchingSodasAreReturned() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        when(sodaService.searchByName("min", 10)).thenReturn(Collections.singletonList(sodaDTO));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_SEARCH_URL)
+                        .param("q", "min")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is(sodaDTO.getName())));
+    }
+
+    @Test
+    void whenGETAggregatesIsCalledThenOneAggregatePerSizeIsReturned() throws Exception {
+
+        when(sodaService.aggregateBySize()).thenReturn(Arrays.asList(
+                new SodaSizeAggregateDTO(SodaSize.SMALL, 1L, 5L),
+                new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 30L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_AGGREGATES_URL)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].size", is("BIG")))
+                .andExpect(jsonPath("$[1].units", is(30)));
+    }
+
+    @Test
+    void whenGETStockLevelsIsCalledWithThresholdThenMatchingSodasAreReturned() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        when(sodaService.findByStockLevel(0.25, null, 100)).thenReturn(Collections.singletonList(sodaDTO));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_STOCK_LEVELS_URL)
+                        .param("below", "0.25")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is(sodaDTO.getName())));
+    }
+
+    @Test
+    void whenGETStockLevelsIsCalledWithoutThresholdThenBadRequestStatusIsReturned() throws Exception {
+
+        when(sodaService.findByStockLevel(null, null, 100)).thenThrow(InvalidStockThresholdException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_STOCK_LEVELS_URL)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETStockIsCalledWithAnInstantThenTheQuantityAtThatInstantIsReturned() throws Exception {
+
+        Instant at = Instant.parse("2026-01-01T10:00:00Z");
+        when(stockHistoryService.quantityAt(VALID_SODA_ID, at)).thenReturn(new StockQuantityAtDTO(VALID_SODA_ID, at, 15));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_STOCK_URL)
+                        .param("at", at.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(15)));
+    }
+
+    @Test
+    void whenGETStockIsCalledForSodaWithoutHistoryThenNotFoundStatusIsReturned() throws Exception {
+
+        when(stockHistoryService.quantityAt(eq(INVALID_SODA_ID), ArgumentMatchers.any(Instant.class))).thenThrow(SodaNotFoundException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + "/" + INVALID_SODA_ID + SODA_API_SUBPATH_STOCK_URL)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void whenPATCHIsCalledWithToIncrementDiscountThenStatusIsReturned() throws Exception {
 
@@ -176,7 +491,7 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         sodaDTO.setQuantity(quantityDTO.getQuantity() + sodaDTO.getQuantity());
 
-        when(sodaService.increment(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(sodaDTO);
+        when(sodaService.tryIncrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.ok(sodaDTO));
 
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -187,6 +502,70 @@ public class SodaControllerTest {
                 .andExpect(jsonPath("$.size", is(sodaDTO.getSize().toString())));
     }
 
+    @Test
+    void whenPATCHIsCalledToIncrementWithIdempotencyKeyThenTheStoredResultIsReturned() throws Exception {
+
+        QuantityDTO quantityDTO = QuantityDTO.builder().quantity(10).build();
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+        when(idempotencyStore.execute(eq("retry-1"), eq("increment:" + VALID_SODA_ID + ":10"), ArgumentMatchers.any())).thenReturn(sodaDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
+                        .header(IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(sodaDTO.getQuantity())));
+        verifyNoInteractions(sodaService);
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementWithReusedIdempotencyKeyThenUnprocessableEntityStatusIsReturned() throws Exception {
+
+        QuantityDTO quantityDTO = QuantityDTO.builder().quantity(5).build();
+
+        when(idempotencyStore.execute(eq("retry-1"), eq("decrement:" + VALID_SODA_ID + ":5"), ArgumentMatchers.any()))
+                .thenThrow(IdempotencyKeyReusedException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
+                        .header(IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(quantityDTO)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementWithIdempotencyKeyForUnknownSodaThenTheNotFoundErrorIsReturned() throws Exception {
+
+        QuantityDTO quantityDTO = QuantityDTO.builder().quantity(10).build();
+
+        when(idempotencyStore.execute(eq("retry-1"), eq("increment:" + INVALID_SODA_ID + ":10"), ArgumentMatchers.any()))
+                .thenThrow(SodaNotFoundException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + INVALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
+                        .header(IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound())
+                .andExpect(result -> assertThat(result.getResolvedException(), instanceOf(SodaNotFoundException.class)));
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementWithIdempotencyKeyBeyondStockThenTheStockExceededErrorIsReturned() throws Exception {
+
+        QuantityDTO quantityDTO = QuantityDTO.builder().quantity(50).build();
+
+        when(idempotencyStore.execute(eq("retry-1"), eq("decrement:" + VALID_SODA_ID + ":50"), ArgumentMatchers.any()))
+                .thenThrow(SodaStockExceededException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
+                        .header(IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(quantityDTO)))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertThat(result.getResolvedException(), instanceOf(SodaStockExceededException.class)));
+    }
+
     @Test
     void whenPATCHIsCalledToIncrementGreatherThanMaxThenStatusIsReturned() throws Exception {
 
@@ -195,12 +574,24 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         sodaDTO.setQuantity(quantityDTO.getQuantity() + sodaDTO.getQuantity());
 
-        when(sodaService.increment(VALID_SODA_ID, quantityDTO.getQuantity())).thenThrow(SodaStockExceededException.class);
+        when(sodaService.tryIncrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.stockExceeded());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(quantityDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementWithNegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+
+        QuantityDTO quantityDTO = QuantityDTO.builder().quantity(-50).build();
 
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(asJsonString(quantityDTO)))
                 .andExpect(status().isBadRequest());
+        verifyNoInteractions(sodaService);
     }
 
     @Test
@@ -208,12 +599,13 @@ public class SodaControllerTest {
 
         QuantityDTO quantityDTO = QuantityDTO.builder().quantity(100).build();
 
-        when(sodaService.increment(INVALID_SODA_ID, quantityDTO.getQuantity())).thenThrow(SodaNotFoundException.class);
+        when(sodaService.tryIncrement(INVALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.notFound());
 
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + INVALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(asJsonString(quantityDTO)))
-                .andExpect(status().isNotFound());
+                .andExpect(status().isNotFound())
+                .andExpect(result -> assertThat(result.getResolvedException(), instanceOf(SodaNotFoundException.class)));
     }
 
     @Test
@@ -225,7 +617,7 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         sodaDTO.setQuantity(sodaDTO.getQuantity() + quantityDTO.getQuantity());
 
-        when(sodaService.decrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(sodaDTO);
+        when(sodaService.tryDecrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.ok(sodaDTO));
 
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -244,7 +636,7 @@ public class SodaControllerTest {
         SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         sodaDTO.setQuantity(sodaDTO.getQuantity() + quantityDTO.getQuantity());
 
-        when(sodaService.decrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenThrow(SodaStockExceededException.class);
+        when(sodaService.tryDecrement(VALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.stockExceeded());
 
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -257,36 +649,206 @@ public class SodaControllerTest {
                 .quantity(5)
                 .build();
 
-        when(sodaService.decrement(INVALID_SODA_ID, quantityDTO.getQuantity())).thenThrow(SodaNotFoundException.class);
+        when(sodaService.tryDecrement(INVALID_SODA_ID, quantityDTO.getQuantity())).thenReturn(SodaResultDTO.notFound());
         mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + INVALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
                         .contentType(MediaType.APPLICATION_JSON).content(asJsonString(quantityDTO)))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenPATCHIsCalledWithStockMovementsThenEachResultIsReturned() throws Exception {
+        StockMovementBatchDTO stockMovementBatchDTO = StockMovementBatchDTO.builder()
+                .movements(Arrays.asList(new StockMovementDTO(VALID_SODA_ID, 5), new StockMovementDTO(INVALID_SODA_ID, -5)))
+                .build();
+        List<StockMovementResultDTO> results = Arrays.asList(
+                new StockMovementResultDTO(VALID_SODA_ID, 5, StockMovementStatus.APPLIED, 15),
+                new StockMovementResultDTO(INVALID_SODA_ID, -5, StockMovementStatus.NOT_FOUND, null));
+
+        when(sodaService.adjustStock(stockMovementBatchDTO.getMovements())).thenReturn(results);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + SODA_API_SUBPATH_STOCK_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(stockMovementBatchDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(StockMovementStatus.APPLIED.toString())))
+                .andExpect(jsonPath("$[0].quantity", is(15)))
+                .andExpect(jsonPath("$[1].status", is(StockMovementStatus.NOT_FOUND.toString())));
+    }
+
+    @Test
+    void whenPATCHIsCalledWithStockMovementGreaterThanAllowedThenBadRequestStatusIsReturned() throws Exception {
+        StockMovementBatchDTO stockMovementBatchDTO = StockMovementBatchDTO.builder()
+                .movements(Collections.singletonList(new StockMovementDTO(VALID_SODA_ID, 101)))
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + SODA_API_SUBPATH_STOCK_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(stockMovementBatchDTO)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(sodaService);
+    }
+
+    @Test
+    void whenPATCHIsCalledWithZeroStockMovementThenBadRequestStatusIsReturned() throws Exception {
+        StockMovementBatchDTO stockMovementBatchDTO = StockMovementBatchDTO.builder()
+                .movements(Arrays.asList(new StockMovementDTO(VALID_SODA_ID, 5), new StockMovementDTO(VALID_SODA_ID, 0)))
+                .build();
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + SODA_API_SUBPATH_STOCK_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(stockMovementBatchDTO)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(sodaService);
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveThenCreatedStatusIsReturned() throws Exception {
+        ReservationRequestDTO reservationRequestDTO = new ReservationRequestDTO(5, null);
+        ReservationDTO reservationDTO = new ReservationDTO(UUID.randomUUID(), VALID_SODA_ID, 5, Instant.parse("2026-10-17T10:15:00Z"));
+
+        when(reservationService.reserve(VALID_SODA_ID, reservationRequestDTO)).thenReturn(reservationDTO);
+
+        mockMvc.perform(post(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_RESERVATIONS_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(reservationRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(reservationDTO.getId().toString())))
+                .andExpect(jsonPath("$.quantity", is(5)));
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveWithoutQuantityThenBadRequestStatusIsReturned() throws Exception {
+
+        mockMvc.perform(post(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_RESERVATIONS_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new ReservationRequestDTO(null, 60L))))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(reservationService);
+    }
+
+    @Test
+    void whenPOSTIsCalledToConfirmReservationThenOkStatusIsReturned() throws Exception {
+        UUID reservationId = UUID.randomUUID();
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
+        when(reservationService.confirm(reservationId)).thenReturn(sodaDTO);
 
+        mockMvc.perform(post(SODA_API_URL_PATH + SODA_API_SUBPATH_RESERVATIONS_URL + "/" + reservationId + "/confirm"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(sodaDTO.getQuantity())));
+    }
 
+    @Test
+    void whenDELETEIsCalledWithUnknownReservationThenNotFoundStatusIsReturned() throws Exception {
+        UUID reservationId = UUID.randomUUID();
 
+        doThrow(ReservationNotFoundException.class).when(reservationService).release(reservationId);
 
+        mockMvc.perform(MockMvcRequestBuilders.delete(SODA_API_URL_PATH + SODA_API_SUBPATH_RESERVATIONS_URL + "/" + reservationId))
+                .andExpect(status().isNotFound());
+    }
 
+    @Test
+    void whenGETIsCalledToStreamWithLastEventIdThenTheSubscriptionResumesAfterIt() throws Exception {
 
+        when(stockEventStream.subscribe("5f3a-7")).thenReturn(new SseEmitter());
 
+        mockMvc.perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH + SODA_API_SUBPATH_STREAM_URL)
+                        .header("Last-Event-ID", "5f3a-7")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(status().isOk());
 
+        verify(stockEventStream).subscribe("5f3a-7");
+    }
 
+    @Test
+    void whenPATCHIsCalledToIncrementWithBinaryQuantityThenTheSodaIsReturnedInBinary() throws Exception {
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().quantity(20).build().toSodaDTO();
 
+        when(sodaService.tryIncrement(VALID_SODA_ID, 10)).thenReturn(SodaResultDTO.ok(sodaDTO));
 
+        MvcResult mvcResult = binaryMockMvc().perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
+                        .contentType(SodaBinaryCodec.MEDIA_TYPE)
+                        .accept(SodaBinaryCodec.MEDIA_TYPE)
+                        .content(SodaBinaryCodec.encodeQuantity(new QuantityDTO(10))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SodaBinaryCodec.MEDIA_TYPE))
+                .andReturn();
 
+        assertThat(SodaBinaryCodec.decodeSoda(binaryBody(mvcResult)), equalTo(sodaDTO));
+    }
 
+    @Test
+    void whenPATCHIsCalledToDecrementWithBinaryQuantityOutOfRangeThenBadRequestStatusIsReturned() throws Exception {
 
+        binaryMockMvc().perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_DECREMENT_URL)
+                        .contentType(SodaBinaryCodec.MEDIA_TYPE)
+                        .content(new byte[]{0, 0, 0, 101}))
+                .andExpect(status().isBadRequest());
 
+        verifyNoInteractions(sodaService);
+    }
 
+    @Test
+    void whenPATCHIsCalledToIncrementWithNegativeBinaryQuantityThenBadRequestStatusIsReturned() throws Exception {
 
+        binaryMockMvc().perform(MockMvcRequestBuilders.patch(SODA_API_URL_PATH + "/" + VALID_SODA_ID + SODA_API_SUBPATH_INCREMENT_URL)
+                        .contentType(SodaBinaryCodec.MEDIA_TYPE)
+                        .content(ByteBuffer.allocate(4).putInt(-10).array()))
+                .andExpect(status().isBadRequest());
 
+        verifyNoInteractions(sodaService);
+    }
 
+    @Test
+    void whenPOSTIsCalledWithABinarySodaThenUnsupportedMediaTypeStatusIsReturned() throws Exception {
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
+        binaryMockMvc().perform(MockMvcRequestBuilders.post(SODA_API_URL_PATH)
+                        .contentType(SodaBinaryCodec.MEDIA_TYPE)
+                        .content(SodaBinaryCodec.encodeSoda(sodaDTO)))
+                .andExpect(status().isUnsupportedMediaType());
 
+        verifyNoInteractions(sodaService);
+    }
 
+    @Test
+    void whenGETListIsCalledAcceptingBinaryThenSodasAreReturnedInBinaryAndJsonStaysTheDefault() throws Exception {
+        List<SodaDTO> sodaDTOs = Arrays.asList(
+                SodaDTOBuilder.builder().build().toSodaDTO(),
+                SodaDTOBuilder.builder().id(VALID_SODA_ID + 1).name("Tubaina").size(SodaSize.SMALL).build().toSodaDTO());
+
+        when(sodaService.listPage(null, 50, null)).thenReturn(new SodaPageDTO(sodaDTOs, null));
+        when(sodaVersions.catalogETag(SodaBinaryCodec.MEDIA_TYPE)).thenReturn("\"kz1-9-x-sodastock-binary\"");
+        when(sodaVersions.catalogETag(MediaType.APPLICATION_JSON)).thenReturn(CATALOG_ETAG);
+
+        MvcResult mvcResult = binaryMockMvc().perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH)
+                        .accept(SodaBinaryCodec.MEDIA_TYPE)
+                        .header(HttpHeaders.IF_NONE_MATCH, CATALOG_ETAG))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"kz1-9-x-sodastock-binary\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+        binaryMockMvc().perform(MockMvcRequestBuilders.get(SODA_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[1].name", is("Tubaina")));
 
+        assertThat(SodaBinaryCodec.decodeSodas(binaryBody(mvcResult)), equalTo(sodaDTOs));
+    }
 
+    private MockMvc binaryMockMvc() {
+        return MockMvcBuilders.standaloneSetup(sodaController)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(), new SodaBinaryHttpMessageConverter())
+                .build();
+    }
 
+    private static ByteBuffer binaryBody(MvcResult mvcResult) {
+        return ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray());
+    }
 }
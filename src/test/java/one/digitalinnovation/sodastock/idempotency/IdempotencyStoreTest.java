@@ -0,0 +1,125 @@
+package one.digitalinnovation.sodastock.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class IdempotencyStoreTest {
+
+    private static final String IDEMPOTENCY_KEY = "retry-1";
+    private static final String FINGERPRINT = "increment:1:10";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyStore = new IdempotencyStore(100, Duration.ofMinutes(10), meterRegistry);
+    }
+
+    @Test
+    void whenKeyIsRepeatedThenTheFirstResultIsReturnedWithoutRunningAgain() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        AtomicInteger executions = new AtomicInteger();
+        StockOperation operation = () -> {
+            executions.incrementAndGet();
+            return sodaDTO;
+        };
+
+        SodaDTO firstResult = idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, operation);
+        SodaDTO repeatedResult = idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, operation);
+
+        assertThat(repeatedResult, sameInstance(firstResult));
+        assertThat(executions.get(), equalTo(1));
+        assertThat(meterRegistry.get("sodastock.idempotency.lookup").tag("result", "hit").timer().count(), equalTo(1L));
+        assertThat(meterRegistry.get("sodastock.idempotency.lookup").tag("result", "miss").timer().count(), equalTo(1L));
+    }
+
+    @Test
+    void whenKeyIsReusedForAnotherRequestThenAnExceptionIsThrown() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, () -> sodaDTO);
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> idempotencyStore.execute(IDEMPOTENCY_KEY, "decrement:1:10", () -> sodaDTO));
+    }
+
+    @Test
+    void whenOperationFailsThenARetryRunsItAgain() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+        assertThrows(SodaStockExceededException.class, () -> idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, () -> {
+            throw new SodaStockExceededException(1L, 10);
+        }));
+        SodaDTO retriedResult = idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, () -> sodaDTO);
+
+        assertThat(retriedResult, equalTo(sodaDTO));
+    }
+
+    @Test
+    void whenKeyIsRepeatedWhileTheFirstRequestRunsThenItWaitsForTheFirstResult() throws Exception {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch firstRequestStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRequest = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<SodaDTO> firstRequest = executorService.submit(() -> idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, () -> {
+                executions.incrementAndGet();
+                firstRequestStarted.countDown();
+                awaitQuietly(releaseFirstRequest);
+                return sodaDTO;
+            }));
+            firstRequestStarted.await(5, TimeUnit.SECONDS);
+
+            CountDownLatch repeatStarted = new CountDownLatch(1);
+            Future<SodaDTO> repeatedRequest = executorService.submit(() -> {
+                repeatStarted.countDown();
+                return idempotencyStore.execute(IDEMPOTENCY_KEY, FINGERPRINT, () -> {
+                    executions.incrementAndGet();
+                    return sodaDTO;
+                });
+            });
+            repeatStarted.await(5, TimeUnit.SECONDS);
+            releaseFirstRequest.countDown();
+
+            assertThat(firstRequest.get(5, TimeUnit.SECONDS), equalTo(sodaDTO));
+            assertThat(repeatedRequest.get(5, TimeUnit.SECONDS), equalTo(sodaDTO));
+            assertThat(executions.get(), equalTo(1));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package one.digitalinnovation.sodastock.ledger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import one.digitalinnovation.sodastock.repository.StockMovementRepository;
+import one.digitalinnovation.sodastock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLedgerTest {
+
+    private static final long SODA_ID = 1L;
+    private static final long OTHER_SODA_ID = 2L;
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+
+    @Mock
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockLedger = new StockLedger(stockMovementRepository, stockSnapshotRepository, meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void whenMovementsAreRecordedThenTheyAreAppendedInOneBatchInOrder() {
+
+        stockLedger.recordAll(Arrays.asList(
+                new StockMovementDTO(SODA_ID, 10),
+                new StockMovementDTO(OTHER_SODA_ID, -3),
+                new StockMovementDTO(SODA_ID, 5)));
+
+        verify(stockMovementRepository).appendAll(Arrays.asList(
+                new StockMovement(null, SODA_ID, 10, NOW, null),
+                new StockMovement(null, OTHER_SODA_ID, -3, NOW, null),
+                new StockMovement(null, SODA_ID, 5, NOW, null)));
+        assertThat(meterRegistry.counter("sodastock.ledger.appended").count(), equalTo(3.0));
+    }
+
+    @Test
+    void whenOnlyZeroDeltasAreRecordedThenNothingIsAppended() {
+
+        stockLedger.record(SODA_ID, 0);
+        stockLedger.recordAll(Collections.emptyList());
+
+        verify(stockMovementRepository, never()).appendAll(anyList());
+    }
+
+    @Test
+    void whenASnapshotIsTakenThenTheSnapshotsAreCounted() {
+
+        when(stockSnapshotRepository.takeSnapshots()).thenReturn(2);
+
+        stockLedger.snapshot();
+
+        assertThat(meterRegistry.counter("sodastock.ledger.snapshots").count(), equalTo(2.0));
+    }
+}
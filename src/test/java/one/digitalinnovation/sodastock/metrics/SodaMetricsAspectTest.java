@@ -0,0 +1,93 @@
+package one.digitalinnovation.sodastock.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.cache.SingleFlight;
+import one.digitalinnovation.sodastock.catalog.CatalogReadModel;
+import one.digitalinnovation.sodastock.catalog.CatalogSnapshot;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.service.SodaService;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SodaMetricsAspectTest {
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Mock
+    private WriteBehindStockEngine stockEngine;
+
+    @Mock
+    private CatalogReadModel catalogReadModel;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private SodaService sodaServiceTarget;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SodaService sodaService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(sodaServiceTarget);
+        proxyFactory.addAspect(new SodaMetricsAspect(meterRegistry));
+        sodaService = proxyFactory.getProxy();
+        when(catalogReadModel.snapshot()).thenReturn(CatalogSnapshot.of(Collections.emptyList()));
+    }
+
+    @Test
+    void whenServiceCallSucceedsThenItIsTimedWithSuccessOutcome() throws SodaNotFoundException {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        when(sodaRepository.findDTOByName(sodaDTO.getName())).thenReturn(Optional.of(sodaDTO));
+
+        sodaService.findByName(sodaDTO.getName());
+
+        assertThat(meterRegistry.get(SodaMetricsAspect.CALLS_METRIC)
+                .tag("layer", "service")
+                .tag("class", "SodaService")
+                .tag("method", "findByName")
+                .tag("outcome", "success")
+                .timer().count(), equalTo(1L));
+    }
+
+    @Test
+    void whenServiceCallThrowsThenItIsTimedWithTheExceptionOutcome() {
+
+        when(sodaRepository.findDTOByName("Guarana")).thenReturn(Optional.empty());
+
+        assertThrows(SodaNotFoundException.class, () -> sodaService.findByName("Guarana"));
+
+        assertThat(meterRegistry.get(SodaMetricsAspect.CALLS_METRIC)
+                .tag("method", "findByName")
+                .tag("outcome", "not_found")
+                .timer().count(), equalTo(1L));
+    }
+}
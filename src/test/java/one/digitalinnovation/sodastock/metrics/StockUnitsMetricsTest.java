@@ -0,0 +1,38 @@
+package one.digitalinnovation.sodastock.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class StockUnitsMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockUnitsMetrics stockUnitsMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockUnitsMetrics = new StockUnitsMetrics(meterRegistry);
+    }
+
+    @Test
+    void whenStockChangesThenUnitsAreCountedByDirection() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+        stockUnitsMetrics.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, 7));
+        stockUnitsMetrics.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, -3));
+        stockUnitsMetrics.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, sodaDTO.getQuantity()));
+
+        assertThat(meterRegistry.get(StockUnitsMetrics.UNITS_METRIC).tag("direction", "increment").counter().count(), equalTo(7.0));
+        assertThat(meterRegistry.get(StockUnitsMetrics.UNITS_METRIC).tag("direction", "decrement").counter().count(), equalTo(3.0));
+    }
+}
@@ -0,0 +1,222 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+@DataJpaTest
+public class SodaRepositoryTest {
+
+    @Autowired
+    private SodaRepository sodaRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    private Soda savedSoda;
+
+    @BeforeEach
+    void setUp() {
+        Soda soda = sodaMapper.toModel(SodaDTOBuilder.builder().id(null).build().toSodaDTO());
+        savedSoda = sodaRepository.saveAndFlush(soda);
+    }
+
+    @Test
+    void whenIncrementFitsInStockThenQuantityIsUpdated() {
+
+        int updatedRows = sodaRepository.incrementQuantity(savedSoda.getId(), 40);
+
+        assertThat(updatedRows, equalTo(1));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(50));
+    }
+
+    @Test
+    void whenQuantityIsChangedThenVersionIsBumped() {
+
+        sodaRepository.incrementQuantity(savedSoda.getId(), 1);
+        sodaRepository.decrementQuantity(savedSoda.getId(), 1);
+        sodaRepository.adjustQuantities(Collections.singletonList(new StockMovementDTO(savedSoda.getId(), 1)));
+
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getVersion(), equalTo(savedSoda.getVersion() + 3));
+    }
+
+    @Test
+    void whenIncrementExceedsMaxThenNothingIsUpdated() {
+
+        int updatedRows = sodaRepository.incrementQuantity(savedSoda.getId(), 41);
+
+        assertThat(updatedRows, equalTo(0));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(10));
+    }
+
+    @Test
+    void whenDecrementEmptiesStockThenQuantityIsUpdated() {
+
+        int updatedRows = sodaRepository.decrementQuantity(savedSoda.getId(), 10);
+
+        assertThat(updatedRows, equalTo(1));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(0));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenNothingIsUpdated() {
+
+        int updatedRows = sodaRepository.decrementQuantity(savedSoda.getId(), 11);
+
+        assertThat(updatedRows, equalTo(0));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(10));
+    }
+
+    @Test
+    void whenNegativeQuantitiesWouldLeaveTheZeroToMaxRangeThenNothingIsUpdated() {
+
+        assertThat(sodaRepository.incrementQuantity(savedSoda.getId(), -11), equalTo(0));
+        assertThat(sodaRepository.decrementQuantity(savedSoda.getId(), -41), equalTo(0));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(10));
+    }
+
+    @Test
+    void whenSodaDoesNotExistThenNothingIsUpdated() {
+
+        assertThat(sodaRepository.incrementQuantity(savedSoda.getId() + 1, 1), equalTo(0));
+        assertThat(sodaRepository.decrementQuantity(savedSoda.getId() + 1, 1), equalTo(0));
+    }
+
+    @Test
+    void whenStockIsChangedAndReadBackThenTheChangedRowIsReturned() {
+
+        Optional<Soda> incrementedSoda = sodaRepository.incrementAndGet(savedSoda.getId(), 5);
+        Optional<Soda> decrementedSoda = sodaRepository.decrementAndGet(savedSoda.getId(), 15);
+
+        assertThat(incrementedSoda.get().getQuantity(), equalTo(15));
+        assertThat(incrementedSoda.get().getVersion(), equalTo(savedSoda.getVersion() + 1));
+        assertThat(decrementedSoda.get().getQuantity(), equalTo(0));
+        assertThat(sodaRepository.decrementAndGet(savedSoda.getId(), 1).isPresent(), equalTo(false));
+        assertThat(sodaRepository.incrementAndGet(savedSoda.getId() + 1, 1).isPresent(), equalTo(false));
+    }
+
+    @Test
+    void whenMovementsAreAdjustedInBatchThenEachMovementGetsItsOwnUpdateCount() {
+
+        List<StockMovementDTO> movements = Arrays.asList(
+                new StockMovementDTO(savedSoda.getId(), 30),
+                new StockMovementDTO(savedSoda.getId(), 20),
+                new StockMovementDTO(savedSoda.getId(), -40),
+                new StockMovementDTO(savedSoda.getId() + 1, 5));
+
+        int[] updatedRows = sodaRepository.adjustQuantities(movements);
+
+        assertThat(updatedRows.length, equalTo(4));
+        assertThat(updatedRows[0], equalTo(1));
+        assertThat(updatedRows[1], equalTo(0));
+        assertThat(updatedRows[2], equalTo(1));
+        assertThat(updatedRows[3], equalTo(0));
+        assertThat(sodaRepository.findById(savedSoda.getId()).get().getQuantity(), equalTo(0));
+    }
+
+    @Test
+    void whenSodasArePagedThenOnlySodasAfterTheGivenIdAreReturned() {
+
+        Soda smallSoda = sodaRepository.save(sodaMapper.toModel(SodaDTOBuilder.builder().id(null).name("Guarana").size(SodaSize.SMALL).build().toSodaDTO()));
+        Soda otherBigSoda = sodaRepository.save(sodaMapper.toModel(SodaDTOBuilder.builder().id(null).name("Tubaina").build().toSodaDTO()));
+
+        List<SodaDTO> allSodas = sodaRepository.findDTOsByIdGreaterThan(savedSoda.getId(), PageRequest.of(0, 10));
+
+        assertThat(allSodas, contains(sodaMapper.toDTO(smallSoda), sodaMapper.toDTO(otherBigSoda)));
+    }
+
+    @Test
+    void whenSodaIsReadAsProjectionThenNoEntityIsLoadedIntoThePersistenceContext() {
+
+        entityManager.clear();
+
+        Optional<SodaDTO> foundSoda = sodaRepository.findDTOByName(savedSoda.getName());
+        List<SodaDTO> sodaPage = sodaRepository.findDTOsByIdGreaterThan(0L, PageRequest.of(0, 10));
+
+        assertThat(foundSoda, equalTo(Optional.of(sodaMapper.toDTO(savedSoda))));
+        assertThat(sodaPage, contains(sodaMapper.toDTO(savedSoda)));
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount(), equalTo(0));
+        assertThat(sodaRepository.findDTOByName("Guarana").isPresent(), equalTo(false));
+    }
+
+    @Test
+    void whenSodasAreStreamedThenTheyComeOrderedById() {
+
+        Soda otherSoda = sodaRepository.save(sodaMapper.toModel(SodaDTOBuilder.builder().id(null).name("Guarana").build().toSodaDTO()));
+
+        try (Stream<Soda> sodas = sodaRepository.streamAllByOrderById()) {
+            assertThat(sodas.map(Soda::getId).collect(Collectors.toList()), contains(savedSoda.getId(), otherSoda.getId()));
+        }
+    }
+
+    @Test
+    void whenSodasAreAggregatedBySizeThenEachSizeGetsItsCountAndUnits() {
+
+        sodaRepository.save(sodaMapper.toModel(SodaDTOBuilder.builder().id(null).name("Guarana").quantity(5).build().toSodaDTO()));
+        sodaRepository.save(sodaMapper.toModel(SodaDTOBuilder.builder().id(null).name("Tubaina").size(SodaSize.SMALL).build().toSodaDTO()));
+
+        List<SodaSizeAggregateDTO> aggregates = sodaRepository.aggregateBySize();
+
+        assertThat(aggregates, containsInAnyOrder(
+                new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 15L),
+                new SodaSizeAggregateDTO(SodaSize.SMALL, 1L, 10L)));
+    }
+
+    @Test
+    void whenVersionStillMatchesThenQuantityIsSetOtherwiseNothingIsUpdated() {
+
+        long version = sodaRepository.findCurrentById(savedSoda.getId()).get().getVersion();
+
+        assertThat(sodaRepository.compareAndSetQuantity(savedSoda.getId(), version, 30), equalTo(1));
+        assertThat(sodaRepository.compareAndSetQuantity(savedSoda.getId(), version, 40), equalTo(0));
+
+        Soda currentSoda = sodaRepository.findCurrentById(savedSoda.getId()).get();
+        assertThat(currentSoda.getQuantity(), equalTo(30));
+        assertThat(currentSoda.getVersion(), equalTo(version + 1));
+        assertThat(sodaRepository.findCurrentById(savedSoda.getId() + 1).isPresent(), equalTo(false));
+    }
+
+    @Test
+    void whenQuantityIsReservedThenDecrementsCannotTakeIt() {
+
+        assertThat(sodaRepository.reserveQuantity(savedSoda.getId(), 8), equalTo(1));
+        assertThat(sodaRepository.reserveQuantity(savedSoda.getId(), 3), equalTo(0));
+
+        assertThat(sodaRepository.decrementQuantity(savedSoda.getId(), 3), equalTo(0));
+        assertThat(sodaRepository.decrementQuantity(savedSoda.getId(), 2), equalTo(1));
+        assertThat(sodaRepository.adjustQuantities(Collections.singletonList(new StockMovementDTO(savedSoda.getId(), -1)))[0], equalTo(0));
+
+        assertThat(sodaRepository.confirmReservedQuantity(savedSoda.getId(), 5), equalTo(1));
+        assertThat(sodaRepository.releaseReservedQuantity(savedSoda.getId(), 3), equalTo(1));
+        assertThat(sodaRepository.releaseReservedQuantity(savedSoda.getId(), 1), equalTo(0));
+
+        Soda currentSoda = sodaRepository.findCurrentById(savedSoda.getId()).get();
+        assertThat(currentSoda.getQuantity(), equalTo(3));
+        assertThat(currentSoda.getReserved(), equalTo(0));
+    }
+}
@@ -0,0 +1,94 @@
+package one.digitalinnovation.sodastock.repository;
+
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import one.digitalinnovation.sodastock.entity.StockSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@DataJpaTest
+public class StockSnapshotRepositoryTest {
+
+    private static final long SODA_ID = 1L;
+    private static final long OTHER_SODA_ID = 2L;
+    private static final Instant T0 = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void whenSnapshotsAreTakenThenNewMovementsAreFoldedIntoThePreviousSnapshot() {
+
+        stockMovementRepository.appendAll(Arrays.asList(
+                movement(SODA_ID, 10, T0),
+                movement(SODA_ID, 5, T0.plusSeconds(1)),
+                movement(OTHER_SODA_ID, 7, T0.plusSeconds(2))));
+        int firstSnapshots = stockSnapshotRepository.takeSnapshots();
+        stockMovementRepository.appendAll(Collections.singletonList(movement(SODA_ID, -3, T0.plusSeconds(3))));
+        int secondSnapshots = stockSnapshotRepository.takeSnapshots();
+
+        Optional<StockSnapshot> latestSnapshot = stockSnapshotRepository
+                .findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(SODA_ID, T0.plusSeconds(60));
+        assertThat(firstSnapshots, equalTo(2));
+        assertThat(secondSnapshots, equalTo(1));
+        assertThat(latestSnapshot.get().getQuantity(), equalTo(12));
+        assertThat(latestSnapshot.get().getTakenAt(), equalTo(T0.plusSeconds(3)));
+        assertThat(stockSnapshotRepository.takeSnapshots(), equalTo(0));
+    }
+
+    @Test
+    void whenAMovementCommitsAfterAHigherIdWasSnapshottedThenTheNextSnapshotStillFoldsIt() {
+
+        insertMovement(10L, SODA_ID, 10, T0.plusSeconds(1));
+        insertMovement(12L, SODA_ID, 5, T0.plusSeconds(2));
+        stockSnapshotRepository.takeSnapshots();
+        insertMovement(11L, SODA_ID, -4, T0);
+        int lateSnapshots = stockSnapshotRepository.takeSnapshots();
+
+        StockSnapshot latestSnapshot = stockSnapshotRepository
+                .findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(SODA_ID, T0.plusSeconds(60)).get();
+        assertThat(lateSnapshots, equalTo(1));
+        assertThat(latestSnapshot.getQuantity(), equalTo(11));
+        assertThat(latestSnapshot.getGeneration(), equalTo(2L));
+        assertThat(latestSnapshot.getTakenAt(), equalTo(T0.plusSeconds(2)));
+    }
+
+    @Test
+    void whenDeltasAreSummedThenOnlyMovementsAfterTheSnapshotAndUpToTheInstantCount() {
+
+        stockMovementRepository.appendAll(Arrays.asList(
+                movement(SODA_ID, 10, T0),
+                movement(SODA_ID, 5, T0.plusSeconds(1))));
+        stockSnapshotRepository.takeSnapshots();
+        stockMovementRepository.appendAll(Collections.singletonList(movement(SODA_ID, -2, T0.plusSeconds(2))));
+
+        assertThat(stockMovementRepository.sumDeltas(SODA_ID, 0L, T0.plusSeconds(1)), equalTo(15L));
+        assertThat(stockMovementRepository.sumDeltas(SODA_ID, 1L, T0.plusSeconds(2)), equalTo(-2L));
+        assertThat(stockMovementRepository.sumDeltas(OTHER_SODA_ID, 0L, T0.plusSeconds(2)), equalTo(0L));
+    }
+
+    private void insertMovement(long id, long sodaId, int delta, Instant createdAt) {
+        jdbcTemplate.update("INSERT INTO stock_movement (id, soda_id, delta, created_at) VALUES (?, ?, ?, ?)",
+                id, sodaId, delta, Timestamp.from(createdAt));
+    }
+
+    private static StockMovement movement(long sodaId, int delta, Instant createdAt) {
+        return new StockMovement(null, sodaId, delta, createdAt, null);
+    }
+}
@@ -0,0 +1,66 @@
+package one.digitalinnovation.sodastock.reservation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HashedTimerWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private final HashedTimerWheel timerWheel = new HashedTimerWheel(100, 8, START);
+
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    void whenDeadlineIsReachedThenTheTaskRunsOnTheFirstTickAtOrAfterIt() {
+
+        timerWheel.schedule(() -> expired.add("first"), START + 250);
+        timerWheel.schedule(() -> expired.add("second"), START + 300);
+
+        assertThat(timerWheel.advance(START + 299), equalTo(0));
+        assertThat(timerWheel.advance(START + 300), equalTo(2));
+        assertThat(expired, contains("first", "second"));
+    }
+
+    @Test
+    void whenDeadlineIsSeveralTurnsAwayThenTheTaskWaitsForItsTurn() {
+
+        timerWheel.schedule(() -> expired.add("late"), START + 2_100);
+        timerWheel.schedule(() -> expired.add("soon"), START + 100);
+
+        timerWheel.advance(START + 1_000);
+        assertThat(expired, contains("soon"));
+
+        timerWheel.advance(START + 2_100);
+        assertThat(expired, contains("soon", "late"));
+    }
+
+    @Test
+    void whenTimeoutIsCancelledThenItsTaskNeverRuns() {
+
+        HashedTimerWheel.Timeout timeout = timerWheel.schedule(() -> expired.add("cancelled"), START + 100);
+        timeout.cancel();
+
+        timerWheel.advance(START + 1_000);
+
+        assertThat(expired, empty());
+    }
+
+    @Test
+    void whenDeadlineHasAlreadyPassedThenTheTaskRunsOnTheNextTick() {
+
+        timerWheel.advance(START + 500);
+        timerWheel.schedule(() -> expired.add("overdue"), START + 200);
+
+        timerWheel.advance(START + 600);
+
+        assertThat(expired, contains("overdue"));
+    }
+}
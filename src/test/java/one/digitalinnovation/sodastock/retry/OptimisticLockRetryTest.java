@@ -0,0 +1,82 @@
+package one.digitalinnovation.sodastock.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+public class OptimisticLockRetryTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OptimisticLockRetry optimisticLockRetry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticLockRetry = new OptimisticLockRetry(transactionManager, meterRegistry, MAX_ATTEMPTS, Duration.ZERO, Duration.ZERO);
+    }
+
+    @Test
+    void whenConflictIsResolvedWithinTheAttemptsThenTheResultIsReturned() {
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = optimisticLockRetry.execute("delete", () -> {
+            if (attempts.incrementAndGet() < MAX_ATTEMPTS) {
+                throw new ObjectOptimisticLockingFailureException("Soda", 1L);
+            }
+            return "deleted";
+        });
+
+        assertThat(result, equalTo("deleted"));
+        assertThat(meterRegistry.get("sodastock.optimistic-lock.conflicts").tag("operation", "delete").counter().count(), equalTo(2.0));
+        assertThat(meterRegistry.get("sodastock.optimistic-lock.retries").tag("operation", "delete").counter().count(), equalTo(2.0));
+    }
+
+    @Test
+    void whenConflictsExhaustTheAttemptsThenTheLastConflictIsThrown() {
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> optimisticLockRetry.execute("delete", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Soda", 1L);
+        }));
+
+        assertThat(attempts.get(), equalTo(MAX_ATTEMPTS));
+        assertThat(meterRegistry.get("sodastock.optimistic-lock.conflicts").tag("operation", "delete").counter().count(), equalTo(3.0));
+        assertThat(meterRegistry.get("sodastock.optimistic-lock.retries").tag("operation", "delete").counter().count(), equalTo(2.0));
+    }
+
+    @Test
+    void whenCallbackThrowsCheckedExceptionThenItIsRethrownWithoutRetrying() {
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(SodaNotFoundException.class, () -> optimisticLockRetry.execute("delete", () -> {
+            attempts.incrementAndGet();
+            throw new SodaNotFoundException(1L);
+        }));
+
+        assertThat(attempts.get(), equalTo(1));
+    }
+}
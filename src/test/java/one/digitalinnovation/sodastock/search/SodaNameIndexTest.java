@@ -0,0 +1,73 @@
+package one.digitalinnovation.sodastock.search;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SodaNameIndexTest {
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @InjectMocks
+    private SodaNameIndex sodaNameIndex;
+
+    private SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    @BeforeEach
+    void setUp() {
+        when(sodaRepository.findAll()).thenReturn(Arrays.asList(
+                sodaMapper.toModel(SodaDTOBuilder.builder().id(1L).name("Guaraná Antarctica").build().toSodaDTO()),
+                sodaMapper.toModel(SodaDTOBuilder.builder().id(2L).name("Mineiro Guaraná").build().toSodaDTO()),
+                sodaMapper.toModel(SodaDTOBuilder.builder().id(3L).name("Guarapan").build().toSodaDTO()),
+                sodaMapper.toModel(SodaDTOBuilder.builder().id(4L).name("Tubaina").build().toSodaDTO())));
+        sodaNameIndex.load();
+    }
+
+    @Test
+    void whenQueryIsAPrefixThenPrefixMatchesComeBeforeSubstringMatches() {
+
+        assertThat(sodaNameIndex.search("GUARA", 10), contains(1L, 3L, 2L));
+        assertThat(sodaNameIndex.search("guarana", 10), contains(1L, 2L));
+        assertThat(sodaNameIndex.search("guara", 2), contains(1L, 3L));
+    }
+
+    @Test
+    void whenQueryIsShortThenOnlyPrefixesMatch() {
+
+        assertThat(sodaNameIndex.search("tu", 10), contains(4L));
+        assertThat(sodaNameIndex.search("ub", 10), empty());
+        assertThat(sodaNameIndex.search("uba", 10), contains(4L));
+        assertThat(sodaNameIndex.search("  ", 10), empty());
+    }
+
+    @Test
+    void whenSodaIsCreatedOrDeletedThenTheIndexFollows() {
+
+        SodaDTO createdSoda = SodaDTOBuilder.builder().id(5L).name("Jesus Guaraná").build().toSodaDTO();
+        SodaDTO deletedSoda = SodaDTOBuilder.builder().id(2L).name("Mineiro Guaraná").build().toSodaDTO();
+
+        sodaNameIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, createdSoda, createdSoda.getQuantity()));
+        sodaNameIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, deletedSoda, -deletedSoda.getQuantity()));
+
+        assertThat(sodaNameIndex.search("guarana", 10), contains(1L, 5L));
+        assertThat(sodaNameIndex.search("mineiro", 10), empty());
+    }
+}
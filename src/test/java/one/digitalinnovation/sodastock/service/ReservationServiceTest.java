@@ -0,0 +1,208 @@
+package one.digitalinnovation.sodastock.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.dto.ReservationDTO;
+import one.digitalinnovation.sodastock.dto.ReservationRequestDTO;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Reservation;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.ReservationNotFoundException;
+import one.digitalinnovation.sodastock.exception.ReservationsUnavailableException;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.repository.ReservationRepository;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.reservation.HashedTimerWheel;
+import one.digitalinnovation.sodastock.reservation.ReservationTimer;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationServiceTest {
+
+    private static final long SODA_ID = 1L;
+    private static final Instant NOW = Instant.parse("2026-10-17T10:00:00Z");
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private WriteBehindStockEngine stockEngine;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ReservationTimer reservationTimer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reservationService = new ReservationService(sodaRepository, reservationRepository, stockEngine, stockLedger,
+                reservationTimer, eventPublisher, meterRegistry, transactionManager, Duration.ofMinutes(15),
+                Duration.ofHours(1), Runnable::run);
+    }
+
+    @Test
+    void whenQuantityIsAvailableThenItIsHeldUntilTheRequestedTtl() throws Exception {
+
+        ArgumentCaptor<Instant> deadline = ArgumentCaptor.forClass(Instant.class);
+        when(reservationTimer.now()).thenReturn(NOW);
+        when(sodaRepository.reserveQuantity(SODA_ID, 5)).thenReturn(1);
+        givenHoldsAreStored();
+
+        ReservationDTO reservation = reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, 7_200L));
+
+        verify(reservationRepository).save(new Reservation(reservation.getId(), SODA_ID, 5, NOW.plus(Duration.ofHours(1))));
+        verify(reservationTimer).schedule(ArgumentMatchers.any(), deadline.capture());
+        assertThat(reservation.getExpiresAt(), equalTo(NOW.plus(Duration.ofHours(1))));
+        assertThat(deadline.getValue(), equalTo(reservation.getExpiresAt()));
+        assertThat(meterRegistry.get("sodastock.reservations.active").gauge().value(), equalTo(1.0));
+    }
+
+    @Test
+    void whenQuantityIsNotAvailableThenAnExceptionIsThrown() {
+
+        when(sodaRepository.reserveQuantity(SODA_ID, 5)).thenReturn(0);
+        when(sodaRepository.existsById(SODA_ID)).thenReturn(true);
+
+        assertThrows(SodaStockExceededException.class, () -> reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, null)));
+    }
+
+    @Test
+    void whenReservationIsConfirmedThenTheSodaIsDecrementedOnce() throws Exception {
+
+        HashedTimerWheel timerWheel = new HashedTimerWheel(100, 8, NOW.toEpochMilli());
+        when(reservationTimer.now()).thenReturn(NOW);
+        when(reservationTimer.schedule(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation ->
+                timerWheel.schedule(invocation.getArgument(0), invocation.<Instant>getArgument(1).toEpochMilli()));
+        when(sodaRepository.reserveQuantity(SODA_ID, 5)).thenReturn(1);
+        givenHoldsAreStored();
+        when(reservationRepository.claim(ArgumentMatchers.any())).thenReturn(1);
+        when(sodaRepository.confirmReservedQuantity(SODA_ID, 5)).thenReturn(1);
+        when(sodaRepository.findCurrentById(SODA_ID)).thenReturn(Optional.of(new Soda(SODA_ID, "Mineiro", 50, 5, 0, SodaSize.BIG, 1L)));
+
+        ReservationDTO reservation = reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, null));
+        SodaDTO confirmedSoda = reservationService.confirm(reservation.getId());
+
+        assertThat(confirmedSoda.getQuantity(), equalTo(5));
+        verify(reservationRepository, never()).findById(reservation.getId());
+        timerWheel.advance(reservation.getExpiresAt().toEpochMilli());
+        verify(sodaRepository, never()).releaseReservedQuantity(SODA_ID, 5);
+        verify(stockLedger).record(SODA_ID, -5);
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == -5));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.release(reservation.getId()));
+    }
+
+    @Test
+    void whenReservationExpiresThenItsQuantityIsReleasedAndItCanNoLongerBeConfirmed() throws Exception {
+
+        ArgumentCaptor<Runnable> expiry = ArgumentCaptor.forClass(Runnable.class);
+        when(reservationTimer.now()).thenReturn(NOW);
+        when(sodaRepository.reserveQuantity(SODA_ID, 5)).thenReturn(1);
+        givenHoldsAreStored();
+        when(reservationRepository.claim(ArgumentMatchers.any())).thenReturn(1);
+
+        ReservationDTO reservation = reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, null));
+        verify(reservationTimer).schedule(expiry.capture(), ArgumentMatchers.eq(NOW.plus(Duration.ofMinutes(15))));
+        expiry.getValue().run();
+
+        verify(sodaRepository).releaseReservedQuantity(SODA_ID, 5);
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.confirm(reservation.getId()));
+        verify(sodaRepository, never()).confirmReservedQuantity(SODA_ID, 5);
+        assertThat(meterRegistry.counter("sodastock.reservations", "outcome", "expired").count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenAHoldPlacedByAnotherInstanceIsReleasedThenItIsReadFromItsRow() throws Exception {
+
+        UUID reservationId = UUID.randomUUID();
+        when(reservationRepository.findById(reservationId))
+                .thenReturn(Optional.of(new Reservation(reservationId, SODA_ID, 5, NOW.plusSeconds(60))));
+        when(reservationRepository.claim(reservationId)).thenReturn(1);
+
+        reservationService.release(reservationId);
+
+        verify(sodaRepository).releaseReservedQuantity(SODA_ID, 5);
+        assertThat(meterRegistry.counter("sodastock.reservations", "outcome", "released").count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenTheSweepFindsExpiredHoldsThenItReleasesThoseNoOneElseClaimed() {
+
+        Reservation orphanedReservation = new Reservation(UUID.randomUUID(), SODA_ID, 5, NOW.minusSeconds(60));
+        Reservation claimedReservation = new Reservation(UUID.randomUUID(), SODA_ID, 3, NOW.minusSeconds(30));
+        when(reservationTimer.now()).thenReturn(NOW);
+        when(reservationRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(ArgumentMatchers.eq(NOW), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(Arrays.asList(orphanedReservation, claimedReservation));
+        when(reservationRepository.claim(orphanedReservation.getId())).thenReturn(1);
+        when(reservationRepository.claim(claimedReservation.getId())).thenReturn(0);
+
+        reservationService.sweepExpired();
+
+        verify(sodaRepository).releaseReservedQuantity(SODA_ID, 5);
+        verify(sodaRepository, never()).releaseReservedQuantity(SODA_ID, 3);
+        assertThat(meterRegistry.counter("sodastock.reservations", "outcome", "expired").count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenWriteBehindIsEnabledThenReservationsAreUnavailable() {
+
+        when(stockEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(ReservationsUnavailableException.class, () -> reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, null)));
+    }
+
+    @Test
+    void whenSodaIsGoneThenReservingThrowsNotFound() {
+
+        when(sodaRepository.reserveQuantity(SODA_ID, 5)).thenReturn(0);
+        when(sodaRepository.existsById(SODA_ID)).thenReturn(false);
+
+        assertThrows(SodaNotFoundException.class, () -> reservationService.reserve(SODA_ID, new ReservationRequestDTO(5, null)));
+    }
+
+    private void givenHoldsAreStored() {
+        when(reservationRepository.save(ArgumentMatchers.any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+}
@@ -0,0 +1,78 @@
+package one.digitalinnovation.sodastock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SodaExportServiceTest {
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    private SodaExportService sodaExportService;
+
+    @BeforeEach
+    void setUp() {
+        sodaExportService = new SodaExportService(sodaRepository, entityManager, objectMapper);
+    }
+
+    @Test
+    void whenExportIsCalledThenEachSodaIsWrittenInItsOwnLine() throws IOException {
+
+        SodaDTO firstSodaDTO = SodaDTOBuilder.builder().id(1L).name("Mineiro").build().toSodaDTO();
+        SodaDTO secondSodaDTO = SodaDTOBuilder.builder().id(2L).name("Guarana").build().toSodaDTO();
+        Soda firstSoda = sodaMapper.toModel(firstSodaDTO);
+        Soda secondSoda = sodaMapper.toModel(secondSodaDTO);
+
+        when(sodaRepository.streamAllByOrderById()).thenReturn(Stream.of(firstSoda, secondSoda));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        sodaExportService.exportAll(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, equalTo(2));
+        assertThat(objectMapper.readValue(lines[0], SodaDTO.class), is(equalTo(firstSodaDTO)));
+        assertThat(objectMapper.readValue(lines[1], SodaDTO.class), is(equalTo(secondSodaDTO)));
+        verify(entityManager).detach(firstSoda);
+        verify(entityManager).detach(secondSoda);
+    }
+
+    @Test
+    void whenExportIsCalledWithoutSodasThenNothingIsWritten() throws IOException {
+
+        when(sodaRepository.streamAllByOrderById()).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        sodaExportService.exportAll(outputStream);
+
+        assertThat(outputStream.size(), equalTo(0));
+    }
+}
@@ -0,0 +1,143 @@
+package one.digitalinnovation.sodastock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.sodastock.dto.SodaImportErrorDTO;
+import one.digitalinnovation.sodastock.dto.SodaImportReportDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.InvalidImportFileException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SodaImportServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SodaImportService sodaImportService;
+
+    @BeforeEach
+    void setUp() {
+        sodaImportService = new SodaImportService(sodaRepository, entityManager, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher, stockLedger, transactionManager,
+                BATCH_SIZE);
+    }
+
+    @Test
+    void whenCsvIsImportedThenValidRowsAreInsertedInChunksAndInvalidRowsAreReported() throws Exception {
+
+        when(sodaRepository.findNamesByNameIn(ArgumentMatchers.anyCollection()))
+                .thenReturn(Collections.emptySet(), Collections.singleton("Mineiro"));
+        when(sodaRepository.saveAll(ArgumentMatchers.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SodaImportReportDTO report = sodaImportService.importCsv(streamOf(
+                "size,name,max,quantity",
+                "BIG,Tubaina,50,10",
+                "small,\"Guarana, \"\"Antarctica\"\"\",50,5",
+                "",
+                "BIG,Fanta,50,lots",
+                "BIG,Sprite,50,200",
+                "BIG,Mineiro,50,10",
+                "SMALL,Pepsi,40,20"));
+
+        assertThat(report.getImported(), equalTo(3L));
+        assertThat(report.getRejected(), equalTo(3L));
+        assertThat(report.getErrors().stream().map(SodaImportErrorDTO::getLine).collect(Collectors.toList()), contains(5L, 6L, 7L));
+        assertThat(report.getErrors().get(0).getMessage(), equalTo("Malformed row: quantity lots is not a whole number"));
+        assertThat(report.getErrors().get(1).getMessage(), startsWith("quantity "));
+        assertThat(report.getErrors().get(2).getMessage(), equalTo("Soda with name Mineiro already registered in the system."));
+
+        ArgumentCaptor<List<Soda>> insertedSodas = ArgumentCaptor.forClass(List.class);
+        verify(sodaRepository, times(2)).saveAll(insertedSodas.capture());
+        assertThat(insertedSodas.getAllValues().get(0).get(1).getName(), equalTo("Guarana, \"Antarctica\""));
+        assertThat(insertedSodas.getAllValues().get(1).get(0).getName(), equalTo("Pepsi"));
+        verify(eventPublisher, times(3)).publishEvent(ArgumentMatchers.any(SodaChangedEvent.class));
+    }
+
+    @Test
+    void whenNdjsonRepeatsANameThenOnlyItsFirstRowIsImported() throws IOException {
+
+        when(sodaRepository.findNamesByNameIn(ArgumentMatchers.anyCollection())).thenReturn(Collections.emptySet());
+        when(sodaRepository.saveAll(ArgumentMatchers.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SodaImportReportDTO report = sodaImportService.importNdjson(streamOf(
+                "{\"name\":\"Tubaina\",\"max\":50,\"quantity\":10,\"size\":\"BIG\"}",
+                "{\"name\":\"Tubaina\",\"max\":50,\"quantity\":20,\"size\":\"BIG\"}",
+                "{\"name\":"));
+
+        assertThat(report.getImported(), equalTo(1L));
+        assertThat(report.getRejected(), equalTo(2L));
+        assertThat(report.getErrors().get(0).getMessage(), equalTo("Soda with name Tubaina already appears on line 1."));
+        assertThat(report.getErrors().get(1).getLine(), equalTo(3L));
+    }
+
+    @Test
+    void whenChunkCannotBeStoredThenItsRowsAreRejected() throws IOException {
+
+        when(sodaRepository.findNamesByNameIn(ArgumentMatchers.anyCollection())).thenReturn(Collections.emptySet());
+        when(sodaRepository.saveAll(ArgumentMatchers.anyList())).thenThrow(new DataIntegrityViolationException("unique name"));
+
+        SodaImportReportDTO report = sodaImportService.importNdjson(streamOf(
+                "{\"name\":\"Tubaina\",\"max\":50,\"quantity\":10,\"size\":\"BIG\"}"));
+
+        assertThat(report.getImported(), equalTo(0L));
+        assertThat(report.getRejected(), equalTo(1L));
+        assertThat(report.getErrors().get(0).getMessage(), equalTo("Could not be stored: unique name"));
+        verify(eventPublisher, never()).publishEvent(ArgumentMatchers.any(SodaChangedEvent.class));
+    }
+
+    @Test
+    void whenCsvHeaderLacksAColumnThenAnExceptionIsThrown() {
+
+        assertThrows(InvalidImportFileException.class, () -> sodaImportService.importCsv(streamOf("name,max,quantity", "Tubaina,50,10")));
+    }
+
+    private static InputStream streamOf(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
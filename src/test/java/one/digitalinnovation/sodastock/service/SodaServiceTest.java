@@ -1,22 +1,50 @@
 package one.digitalinnovation.sodastock.service;
 
 import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.cache.SharedLookup;
+import one.digitalinnovation.sodastock.cache.SingleFlight;
+import one.digitalinnovation.sodastock.catalog.CatalogReadModel;
+import one.digitalinnovation.sodastock.catalog.CatalogSnapshot;
 import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaPageDTO;
+import one.digitalinnovation.sodastock.dto.SodaResultDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementResultDTO;
 import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaResultStatus;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.enums.StockMovementStatus;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.InvalidCursorException;
+import one.digitalinnovation.sodastock.exception.InvalidStockThresholdException;
 import one.digitalinnovation.sodastock.exception.SodaAlreadyRegisteredException;
 import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
 import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
 import one.digitalinnovation.sodastock.mapper.SodaMapper;
 import one.digitalinnovation.sodastock.repository.SodaRepository;
+import one.digitalinnovation.sodastock.retry.OptimisticLockRetry;
+import one.digitalinnovation.sodastock.search.SodaNameIndex;
+import one.digitalinnovation.sodastock.retry.TransactionalCallback;
+import one.digitalinnovation.sodastock.stock.SodaSizeAggregates;
+import one.digitalinnovation.sodastock.stock.StockCombiner;
+import one.digitalinnovation.sodastock.stock.StockLevelIndex;
+import one.digitalinnovation.sodastock.stock.WriteBehindStockEngine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -32,6 +60,36 @@ public class SodaServiceTest {
     @Mock
     private SodaRepository sodaRepository;
 
+    @Mock
+    private SingleFlight singleFlight;
+
+    @Mock
+    private WriteBehindStockEngine stockEngine;
+
+    @Mock
+    private StockCombiner stockCombiner;
+
+    @Mock
+    private StockLevelIndex stockLevelIndex;
+
+    @Mock
+    private SodaSizeAggregates sodaSizeAggregates;
+
+    @Mock
+    private SodaNameIndex sodaNameIndex;
+
+    @Mock
+    private CatalogReadModel catalogReadModel;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OptimisticLockRetry optimisticLockRetry;
+
     private SodaMapper sodaMapper = SodaMapper.INSTANCE;
 
     @InjectMocks
@@ -51,6 +109,9 @@ public class SodaServiceTest {
         assertEquals(sodaDTO.getId(), createSodaDTO.getId());
         assertEquals(sodaDTO.getName(), createSodaDTO.getName());
         assertEquals(sodaDTO.getQuantity(), createSodaDTO.getQuantity());
+        verify(stockLedger).record(sodaDTO.getId(), sodaDTO.getQuantity());
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.CREATED && event.getDelta() == sodaDTO.getQuantity()));
     }
 
     @Test
@@ -69,9 +130,10 @@ public class SodaServiceTest {
     void whenValidSodaNameIsGivenThenReturnASoda() throws SodaNotFoundException {
 
         SodaDTO expectedFoundSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedFoundSoda = sodaMapper.toModel(expectedFoundSodaDTO);
 
-        when(sodaRepository.findByName(expectedFoundSoda.getName())).thenReturn(Optional.of(expectedFoundSoda));
+        givenCatalogOf();
+        runSharedLookupsInline();
+        when(sodaRepository.findDTOByName(expectedFoundSodaDTO.getName())).thenReturn(Optional.of(expectedFoundSodaDTO));
 
         SodaDTO foundSodaDTO = sodaService.findByName(expectedFoundSodaDTO.getName());
 
@@ -79,49 +141,141 @@ public class SodaServiceTest {
 
     }
 
+    @Test
+    void whenSodaNameIsInTheCatalogSnapshotThenItIsReturnedWithoutTheRepository() throws SodaNotFoundException {
+
+        SodaDTO expectedFoundSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+        givenCatalogOf(expectedFoundSodaDTO);
+
+        SodaDTO foundSodaDTO = sodaService.findByName(expectedFoundSodaDTO.getName());
+
+        assertThat(foundSodaDTO, is(equalTo(expectedFoundSodaDTO)));
+        verifyNoInteractions(sodaRepository);
+
+    }
+
     @Test
     void whenNoRegisteredSodaNameIsGivenThenAThrowAnException() {
 
         SodaDTO expectedFoundSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
 
-        when(sodaRepository.findByName(expectedFoundSodaDTO.getName())).thenReturn(Optional.empty());
+        givenCatalogOf();
+        runSharedLookupsInline();
+        when(sodaRepository.findDTOByName(expectedFoundSodaDTO.getName())).thenReturn(Optional.empty());
 
         assertThrows(SodaNotFoundException.class, () -> sodaService.findByName(expectedFoundSodaDTO.getName()));
 
     }
 
     @Test
-    void whenListSodasIsCalledThenReturnAListOfSodas() {
+    void whenListSodasIsCalledThenReturnAListOfSodas() throws InvalidCursorException {
 
         SodaDTO expectedFoundSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedFoundSoda = sodaMapper.toModel(expectedFoundSodaDTO);
 
-        when(sodaRepository.findAll()).thenReturn(Collections.singletonList(expectedFoundSoda));
+        givenCatalogOf(expectedFoundSodaDTO);
 
-        List<SodaDTO> foundListSodaDTO = sodaService.listAll();
+        SodaPageDTO foundSodaPageDTO = sodaService.listPage(null, 10, null);
 
-        assertThat(foundListSodaDTO, is(not(empty())));
-        assertThat(foundListSodaDTO.get(0), is(equalTo(expectedFoundSodaDTO)));
+        assertThat(foundSodaPageDTO.getSodas(), is(not(empty())));
+        assertThat(foundSodaPageDTO.getSodas().get(0), is(equalTo(expectedFoundSodaDTO)));
+        assertThat(foundSodaPageDTO.getNextCursor(), is(nullValue()));
 
     }
 
     @Test
-    void whenListSodasIsCalledThenReturnAnEmptyListOfSodas() {
+    void whenListSodasIsCalledThenReturnAnEmptyListOfSodas() throws InvalidCursorException {
 
-        when(sodaRepository.findAll()).thenReturn(Collections.EMPTY_LIST);
+        givenCatalogOf();
 
-        List<SodaDTO> foundListSodaDTO = sodaService.listAll();
+        SodaPageDTO foundSodaPageDTO = sodaService.listPage(null, 10, null);
 
-        assertThat(foundListSodaDTO, is((empty())));
+        assertThat(foundSodaPageDTO.getSodas(), is((empty())));
+        assertThat(foundSodaPageDTO.getNextCursor(), is(nullValue()));
 
     }
 
+    @Test
+    void whenListSodasHasMoreSodasThanLimitThenTheNextCursorContinuesAfterTheLastSoda() throws InvalidCursorException {
+
+        SodaDTO firstSoda = SodaDTOBuilder.builder().id(1L).name("Mineiro").build().toSodaDTO();
+        SodaDTO secondSoda = SodaDTOBuilder.builder().id(2L).name("Guarana").build().toSodaDTO();
+        SodaDTO thirdSoda = SodaDTOBuilder.builder().id(3L).name("Tubaina").build().toSodaDTO();
+        SodaDTO smallSoda = SodaDTOBuilder.builder().id(4L).name("Itubaina").size(SodaSize.SMALL).build().toSodaDTO();
+
+        givenCatalogOf(firstSoda, secondSoda, thirdSoda, smallSoda);
+
+        SodaPageDTO firstPage = sodaService.listPage(null, 2, SodaSize.BIG);
+        SodaPageDTO secondPage = sodaService.listPage(firstPage.getNextCursor(), 2, SodaSize.BIG);
+
+        assertThat(firstPage.getSodas().size(), equalTo(2));
+        assertThat(firstPage.getNextCursor(), is(notNullValue()));
+        assertThat(secondPage.getSodas().get(0).getName(), equalTo(thirdSoda.getName()));
+        assertThat(secondPage.getNextCursor(), is(nullValue()));
+
+    }
+
+    @Test
+    void whenListSodasIsCalledWithInvalidCursorThenAThrowAnException() {
+
+        assertThrows(InvalidCursorException.class, () -> sodaService.listPage("not-a-cursor", 10, null));
+
+    }
+
+    @Test
+    void whenStockLevelBelowIsGivenThenLowStockSodasAreReturned() throws InvalidStockThresholdException {
+
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        when(stockLevelIndex.findBelow(0.25, 10)).thenReturn(Collections.singletonList(expectedSodaDTO));
+
+        assertThat(sodaService.findByStockLevel(0.25, null, 10), contains(expectedSodaDTO));
+    }
+
+    @Test
+    void whenStockLevelAboveIsGivenThenTheLimitIsCapped() throws InvalidStockThresholdException {
+
+        when(stockLevelIndex.findAbove(0.9, 500)).thenReturn(Collections.emptyList());
+
+        assertThat(sodaService.findByStockLevel(null, 0.9, 100_000), is(empty()));
+    }
+
+    @Test
+    void whenSearchMatchesNamesThenTheirSodasAreReturnedInIndexOrder() {
+
+        SodaDTO firstSodaDTO = SodaDTOBuilder.builder().id(2L).name("Guarana").build().toSodaDTO();
+        SodaDTO secondSodaDTO = SodaDTOBuilder.builder().id(1L).name("Mineiro Guarana").build().toSodaDTO();
+        when(sodaNameIndex.search("gua", 10)).thenReturn(Arrays.asList(2L, 3L, 1L));
+        when(stockLevelIndex.find(2L)).thenReturn(Optional.of(firstSodaDTO));
+        when(stockLevelIndex.find(3L)).thenReturn(Optional.empty());
+        when(stockLevelIndex.find(1L)).thenReturn(Optional.of(secondSodaDTO));
+
+        assertThat(sodaService.searchByName("gua", 10), contains(firstSodaDTO, secondSodaDTO));
+    }
+
+    @Test
+    void whenNeitherOrBothStockLevelsAreGivenThenAnExceptionIsThrown() {
+
+        assertThrows(InvalidStockThresholdException.class, () -> sodaService.findByStockLevel(null, null, 10));
+        assertThrows(InvalidStockThresholdException.class, () -> sodaService.findByStockLevel(0.1, 0.9, 10));
+    }
+
+    @Test
+    void whenAggregatesAreRequestedThenTheyAreServedWithoutTheRepository() {
+
+        List<SodaSizeAggregateDTO> expectedAggregates = Collections.singletonList(new SodaSizeAggregateDTO(SodaSize.BIG, 1L, 10L));
+        when(sodaSizeAggregates.aggregates()).thenReturn(expectedAggregates);
+
+        assertThat(sodaService.aggregateBySize(), is(equalTo(expectedAggregates)));
+        verifyNoInteractions(sodaRepository);
+    }
+
     @Test
     void whenDeleteIsCalledWithValidIdThenASodaShouldBeDelete() throws SodaNotFoundException {
 
         SodaDTO expectedDeleteSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         Soda expectedDeleteSoda = sodaMapper.toModel(expectedDeleteSodaDTO);
 
+        runRetriedCallbacksOnce();
         when(sodaRepository.findById(expectedDeleteSodaDTO.getId())).thenReturn(Optional.of(expectedDeleteSoda));
         doNothing().when(sodaRepository).deleteById(expectedDeleteSodaDTO.getId());
 
@@ -129,12 +283,16 @@ public class SodaServiceTest {
 
         verify(sodaRepository, times(1)).findById(expectedDeleteSodaDTO.getId());
         verify(sodaRepository, times(1)).deleteById(expectedDeleteSodaDTO.getId());
+        verify(stockLedger).record(expectedDeleteSodaDTO.getId(), -expectedDeleteSodaDTO.getQuantity());
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.DELETED && event.getSoda().getName().equals(expectedDeleteSodaDTO.getName())));
 
     }
 
     @Test
     void whenDeleteIsCalledWithInvalidIdIsGivenThenAThrowAnException() {
 
+        runRetriedCallbacksOnce();
         when(sodaRepository.findById(INVALID_SODA_ID)).thenReturn(Optional.empty());
 
         assertThrows(SodaNotFoundException.class, () -> sodaService.deleteById(INVALID_SODA_ID));
@@ -145,31 +303,37 @@ public class SodaServiceTest {
     void whenIncrementIsCalledThenIncrementSodaStock() throws SodaNotFoundException, SodaStockExceededException {
 
         SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSavedSoda = sodaMapper.toModel(expectedSodaDTO);
-
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSavedSoda));
-        when(sodaRepository.save(expectedSavedSoda)).thenReturn(expectedSavedSoda);
-
         int quantityToIncrement = 10;
         int expectedQuantityAfterToIncrement = expectedSodaDTO.getQuantity() + quantityToIncrement;
+        Soda expectedIncrementedSoda = sodaMapper.toModel(expectedSodaDTO);
+        expectedIncrementedSoda.setQuantity(expectedQuantityAfterToIncrement);
+
+        runRetriedCallbacksOnce();
+        when(sodaRepository.incrementAndGet(expectedSodaDTO.getId(), quantityToIncrement)).thenReturn(Optional.of(expectedIncrementedSoda));
 
         SodaDTO incrementedSodaDTO = sodaService.increment(expectedSodaDTO.getId(), quantityToIncrement);
 
         assertThat(expectedQuantityAfterToIncrement, equalTo(incrementedSodaDTO.getQuantity()));
         assertThat(expectedQuantityAfterToIncrement, lessThan(incrementedSodaDTO.getMax()));
+        verify(sodaRepository, never()).save(ArgumentMatchers.any(Soda.class));
+        verify(sodaRepository, never()).findById(expectedSodaDTO.getId());
+        verify(stockLedger).record(expectedSodaDTO.getId(), quantityToIncrement);
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == quantityToIncrement));
 
     }
 
     @Test
-    void whenIncrementIsGreaterThanMaxStockSodaThenThrowExcepetion() throws SodaNotFoundException, SodaStockExceededException {
+    void whenIncrementIsGreaterThanMaxStockSodaThenThrowExcepetion() {
 
         SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSoda = sodaMapper.toModel(expectedSodaDTO);
-
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSoda));
 
         int quantityToIncrement = 100;
 
+        runRetriedCallbacksOnce();
+        when(sodaRepository.incrementAndGet(expectedSodaDTO.getId(), quantityToIncrement)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(expectedSodaDTO.getId())).thenReturn(true);
+
         assertThrows(SodaStockExceededException.class, ()-> sodaService.increment(expectedSodaDTO.getId(), quantityToIncrement));
 
     }
@@ -179,13 +343,15 @@ public class SodaServiceTest {
     void whenIncrementAfterSumIsGreaterThanMaxStockSodaThenThrowExcepetion() {
 
         SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSoda = sodaMapper.toModel(expectedSodaDTO);
 
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSoda));
+        int quantityToIncrement = 41;
 
-        int quantityToIncrement = 100;
+        runRetriedCallbacksOnce();
+        when(sodaRepository.incrementAndGet(expectedSodaDTO.getId(), quantityToIncrement)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(expectedSodaDTO.getId())).thenReturn(true);
 
         assertThrows(SodaStockExceededException.class, ()-> sodaService.increment(expectedSodaDTO.getId(), quantityToIncrement));
+        verify(sodaRepository, never()).findById(expectedSodaDTO.getId());
 
     }
 
@@ -194,28 +360,84 @@ public class SodaServiceTest {
 
         int quantityToIncrement = 100;
 
-        when(sodaRepository.findById(INVALID_SODA_ID)).thenReturn(Optional.empty());
+        runRetriedCallbacksOnce();
+        when(sodaRepository.incrementAndGet(INVALID_SODA_ID, quantityToIncrement)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(INVALID_SODA_ID)).thenReturn(false);
 
         assertThrows(SodaNotFoundException.class, () -> sodaService.increment(INVALID_SODA_ID, quantityToIncrement));
 
     }
 
     @Test
-    void whenDecrementIsCalledThenDecrementSodaStock() throws SodaNotFoundException, SodaStockExceededException {
+    void whenCombiningIsEnabledThenDecrementIsCombinedWithConcurrentAdjustments() throws SodaNotFoundException, SodaStockExceededException {
 
-        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSavedSoda = sodaMapper.toModel(expectedSodaDTO);
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().quantity(5).build().toSodaDTO();
+        int quantityToDecrement = 5;
 
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSavedSoda));
-        when(sodaRepository.save(expectedSavedSoda)).thenReturn(expectedSavedSoda);
+        when(stockCombiner.isEnabled()).thenReturn(true);
+        when(stockCombiner.adjust(expectedSodaDTO.getId(), -quantityToDecrement)).thenReturn(expectedSodaDTO);
+
+        SodaDTO decrementedSodaDTO = sodaService.decrement(expectedSodaDTO.getId(), quantityToDecrement);
+
+        assertThat(decrementedSodaDTO, is(equalTo(expectedSodaDTO)));
+        verifyNoInteractions(sodaRepository);
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == -quantityToDecrement));
+    }
+
+    @Test
+    void whenWriteBehindIsEnabledThenIncrementIsAppliedInMemory() throws SodaNotFoundException, SodaStockExceededException {
+
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().quantity(20).build().toSodaDTO();
+        int quantityToIncrement = 10;
+
+        when(stockEngine.isEnabled()).thenReturn(true);
+        when(stockEngine.adjust(expectedSodaDTO.getId(), quantityToIncrement)).thenReturn(expectedSodaDTO);
 
+        SodaDTO incrementedSodaDTO = sodaService.increment(expectedSodaDTO.getId(), quantityToIncrement);
+
+        assertThat(incrementedSodaDTO, is(equalTo(expectedSodaDTO)));
+        verifyNoInteractions(sodaRepository);
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == quantityToIncrement));
+
+    }
+
+    @Test
+    void whenWriteBehindIsEnabledThenFoundSodaHasTheInMemoryQuantity() throws SodaNotFoundException {
+
+        SodaDTO snapshotSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+
+        givenCatalogOf(snapshotSodaDTO);
+        when(stockEngine.isEnabled()).thenReturn(true);
+        when(stockEngine.quantityOf(snapshotSodaDTO.getId())).thenReturn(Optional.of(42));
+
+        SodaDTO foundSodaDTO = sodaService.findByName(snapshotSodaDTO.getName());
+
+        assertThat(foundSodaDTO.getQuantity(), equalTo(42));
+        assertThat(snapshotSodaDTO.getQuantity(), equalTo(10));
+
+    }
+
+    @Test
+    void whenDecrementIsCalledThenDecrementSodaStock() throws SodaNotFoundException, SodaStockExceededException {
+
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
         int quantityToDecrement = 5;
         int expectedQuantityAfterToDecrement = expectedSodaDTO.getQuantity() - quantityToDecrement;
+        Soda expectedDecrementedSoda = sodaMapper.toModel(expectedSodaDTO);
+        expectedDecrementedSoda.setQuantity(expectedQuantityAfterToDecrement);
+
+        runRetriedCallbacksOnce();
+        when(sodaRepository.decrementAndGet(expectedSodaDTO.getId(), quantityToDecrement)).thenReturn(Optional.of(expectedDecrementedSoda));
 
         SodaDTO decrementedSodaDTO = sodaService.decrement(expectedSodaDTO.getId(), quantityToDecrement);
 
         assertThat(expectedQuantityAfterToDecrement, equalTo(decrementedSodaDTO.getQuantity()));
         assertThat(expectedQuantityAfterToDecrement, greaterThan(0));
+        verify(sodaRepository, never()).save(ArgumentMatchers.any(Soda.class));
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == -quantityToDecrement));
 
     }
 
@@ -223,13 +445,13 @@ public class SodaServiceTest {
     void whenDecrementIsCalledToEmptyStockThenEmptySodaStock() throws SodaNotFoundException, SodaStockExceededException {
 
         SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSavedSoda = sodaMapper.toModel(expectedSodaDTO);
-
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSavedSoda));
-        when(sodaRepository.save(expectedSavedSoda)).thenReturn(expectedSavedSoda);
-
         int quantityToDecrement = 10;
         int expectedQuantityAfterToDecrement = expectedSodaDTO.getQuantity() - quantityToDecrement;
+        Soda expectedDecrementedSoda = sodaMapper.toModel(expectedSodaDTO);
+        expectedDecrementedSoda.setQuantity(expectedQuantityAfterToDecrement);
+
+        runRetriedCallbacksOnce();
+        when(sodaRepository.decrementAndGet(expectedSodaDTO.getId(), quantityToDecrement)).thenReturn(Optional.of(expectedDecrementedSoda));
 
         SodaDTO decrementedSodaDTO = sodaService.decrement(expectedSodaDTO.getId(), quantityToDecrement);
 
@@ -241,13 +463,15 @@ public class SodaServiceTest {
     @Test
     void whenDecrementIsLowerThanZeroThenThrowException() {
         SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
-        Soda expectedSoda = sodaMapper.toModel(expectedSodaDTO);
-
-        when(sodaRepository.findById(expectedSodaDTO.getId())).thenReturn(Optional.of(expectedSoda));
 
         int quantityToDecrement = 80;
 
+        runRetriedCallbacksOnce();
+        when(sodaRepository.decrementAndGet(expectedSodaDTO.getId(), quantityToDecrement)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(expectedSodaDTO.getId())).thenReturn(true);
+
         assertThrows(SodaStockExceededException.class, () -> sodaService.decrement(expectedSodaDTO.getId(), quantityToDecrement));
+        verifyNoInteractions(eventPublisher);
     }
 
 
@@ -256,38 +480,123 @@ public class SodaServiceTest {
 
         int quantityToDecrement = 100;
 
-        when(sodaRepository.findById(INVALID_SODA_ID)).thenReturn(Optional.empty());
+        runRetriedCallbacksOnce();
+        when(sodaRepository.decrementAndGet(INVALID_SODA_ID, quantityToDecrement)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(INVALID_SODA_ID)).thenReturn(false);
 
         assertThrows(SodaNotFoundException.class, () -> sodaService.decrement(INVALID_SODA_ID, quantityToDecrement));
 
     }
-}
-
-
-
-
-
-
-
-
-
 
+    @Test
+    void whenTryIncrementIsCalledThenTheIncrementedSodaIsReturnedAsAResult() {
 
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        Soda expectedIncrementedSoda = sodaMapper.toModel(expectedSodaDTO);
+        expectedIncrementedSoda.setQuantity(expectedSodaDTO.getQuantity() + 10);
 
+        runRetriedCallbacksOnce();
+        when(sodaRepository.incrementAndGet(expectedSodaDTO.getId(), 10)).thenReturn(Optional.of(expectedIncrementedSoda));
 
+        SodaResultDTO result = sodaService.tryIncrement(expectedSodaDTO.getId(), 10);
 
+        assertThat(result.getStatus(), equalTo(SodaResultStatus.OK));
+        assertThat(result.getSoda().getQuantity(), equalTo(expectedSodaDTO.getQuantity() + 10));
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == 10));
+    }
 
+    @Test
+    void whenTryDecrementGoesBelowZeroThenAStockExceededResultIsReturned() {
 
+        runRetriedCallbacksOnce();
+        when(sodaRepository.decrementAndGet(INVALID_SODA_ID, 80)).thenReturn(Optional.empty());
+        when(sodaRepository.existsById(INVALID_SODA_ID)).thenReturn(true);
 
+        SodaResultDTO result = sodaService.tryDecrement(INVALID_SODA_ID, 80);
 
+        assertThat(result.getStatus(), equalTo(SodaResultStatus.STOCK_EXCEEDED));
+        assertThat(result.getSoda(), is(nullValue()));
+        verifyNoInteractions(eventPublisher);
+    }
 
+    @Test
+    void whenTryFindByNameMissesThenANotFoundResultIsReturnedAndTheThrowingLookupHasNoStackTrace() {
 
+        givenCatalogOf();
+        runSharedLookupsInline();
+        when(sodaRepository.findDTOByName("Guarana")).thenReturn(Optional.empty());
 
+        assertThat(sodaService.tryFindByName("Guarana").getStatus(), equalTo(SodaResultStatus.NOT_FOUND));
 
+        SodaNotFoundException exception = assertThrows(SodaNotFoundException.class, () -> sodaService.findByName("Guarana"));
+        assertThat(exception.getStackTrace().length, equalTo(0));
+        assertThat(exception.getMessage(), equalTo("Soda with name Guarana not found in system."));
+    }
 
+    @Test
+    void whenStockIsAdjustedInBatchThenEachMovementHasItsOwnResult() {
 
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        Soda expectedSoda = sodaMapper.toModel(expectedSodaDTO);
+        List<StockMovementDTO> movements = Arrays.asList(
+                new StockMovementDTO(expectedSodaDTO.getId(), 5),
+                new StockMovementDTO(expectedSodaDTO.getId(), -80),
+                new StockMovementDTO(INVALID_SODA_ID + 1, 5));
+
+        when(sodaRepository.adjustQuantities(movements)).thenReturn(new int[]{1, 0, 0});
+        when(sodaRepository.findAllById(Set.of(expectedSodaDTO.getId(), INVALID_SODA_ID + 1)))
+                .thenReturn(Collections.singletonList(expectedSoda));
+
+        List<StockMovementResultDTO> results = sodaService.adjustStock(movements);
+
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.get(0).getStatus(), equalTo(StockMovementStatus.APPLIED));
+        assertThat(results.get(0).getQuantity(), equalTo(expectedSodaDTO.getQuantity()));
+        assertThat(results.get(1).getStatus(), equalTo(StockMovementStatus.STOCK_EXCEEDED));
+        assertThat(results.get(2).getStatus(), equalTo(StockMovementStatus.NOT_FOUND));
+        assertThat(results.get(2).getQuantity(), is(nullValue()));
+        verify(stockLedger).recordAll(Collections.singletonList(new StockMovementDTO(expectedSodaDTO.getId(), 5)));
+    }
 
+    @Test
+    void whenASodaIsMovedTwiceInOneBatchThenEachMovementReportsTheQuantityAfterIt() {
 
+        SodaDTO expectedSodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        Soda movedSoda = sodaMapper.toModel(expectedSodaDTO);
+        movedSoda.setQuantity(expectedSodaDTO.getQuantity() + 8);
+        List<StockMovementDTO> movements = Arrays.asList(
+                new StockMovementDTO(expectedSodaDTO.getId(), 5),
+                new StockMovementDTO(expectedSodaDTO.getId(), -90),
+                new StockMovementDTO(expectedSodaDTO.getId(), 3));
+
+        when(sodaRepository.adjustQuantities(movements)).thenReturn(new int[]{1, 0, 1});
+        when(sodaRepository.findAllById(Set.of(expectedSodaDTO.getId()))).thenReturn(Collections.singletonList(movedSoda));
+
+        List<StockMovementResultDTO> results = sodaService.adjustStock(movements);
+
+        assertThat(results.get(0).getQuantity(), equalTo(expectedSodaDTO.getQuantity() + 5));
+        assertThat(results.get(1).getStatus(), equalTo(StockMovementStatus.STOCK_EXCEEDED));
+        assertThat(results.get(1).getQuantity(), equalTo(expectedSodaDTO.getQuantity() + 5));
+        assertThat(results.get(2).getQuantity(), equalTo(expectedSodaDTO.getQuantity() + 8));
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getDelta() == 5 && event.getSoda().getQuantity() == expectedSodaDTO.getQuantity() + 5));
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getDelta() == 3 && event.getSoda().getQuantity() == expectedSodaDTO.getQuantity() + 8));
+        verifyNoMoreInteractions(eventPublisher);
+    }
 
+    private void givenCatalogOf(SodaDTO... sodas) {
+        when(catalogReadModel.snapshot()).thenReturn(CatalogSnapshot.of(Arrays.asList(sodas)));
+    }
 
+    private void runSharedLookupsInline() {
+        when(singleFlight.execute(anyString(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<SharedLookup<?, ?>>getArgument(2).load());
+    }
 
+    private void runRetriedCallbacksOnce() {
+        when(optimisticLockRetry.execute(anyString(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<TransactionalCallback<?, ?>>getArgument(1).doInTransaction());
+    }
+}
@@ -0,0 +1,71 @@
+package one.digitalinnovation.sodastock.service;
+
+import one.digitalinnovation.sodastock.dto.StockQuantityAtDTO;
+import one.digitalinnovation.sodastock.entity.StockMovement;
+import one.digitalinnovation.sodastock.entity.StockSnapshot;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.repository.StockMovementRepository;
+import one.digitalinnovation.sodastock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockHistoryServiceTest {
+
+    private static final long SODA_ID = 1L;
+    private static final Instant AT = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+
+    @InjectMocks
+    private StockHistoryService stockHistoryService;
+
+    @Test
+    void whenSnapshotExistsThenQuantityIsTheSnapshotPlusTheLaterMovements() throws SodaNotFoundException {
+
+        StockSnapshot snapshot = new StockSnapshot(1L, SODA_ID, 20, 3L, AT.minusSeconds(30));
+        when(stockSnapshotRepository.findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(SODA_ID, AT)).thenReturn(Optional.of(snapshot));
+        when(stockMovementRepository.sumDeltas(SODA_ID, 3L, AT)).thenReturn(-5L);
+
+        StockQuantityAtDTO quantityAt = stockHistoryService.quantityAt(SODA_ID, AT);
+
+        assertThat(quantityAt.getQuantity(), equalTo(15));
+        assertThat(quantityAt.getAt(), equalTo(AT));
+    }
+
+    @Test
+    void whenNoSnapshotExistsThenQuantityIsRebuiltFromTheFirstMovement() throws SodaNotFoundException {
+
+        when(stockSnapshotRepository.findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(SODA_ID, AT)).thenReturn(Optional.empty());
+        when(stockMovementRepository.findFirstBySodaIdOrderByIdAsc(SODA_ID))
+                .thenReturn(Optional.of(new StockMovement(1L, SODA_ID, 10, AT.minusSeconds(5), null)));
+        when(stockMovementRepository.sumDeltas(SODA_ID, 0L, AT)).thenReturn(12L);
+
+        assertThat(stockHistoryService.quantityAt(SODA_ID, AT).getQuantity(), equalTo(12));
+    }
+
+    @Test
+    void whenSodaHadNoMovementsAtTheInstantThenAnExceptionIsThrown() {
+
+        when(stockSnapshotRepository.findFirstBySodaIdAndTakenAtLessThanEqualOrderByTakenAtDescGenerationDesc(SODA_ID, AT)).thenReturn(Optional.empty());
+        when(stockMovementRepository.findFirstBySodaIdOrderByIdAsc(SODA_ID))
+                .thenReturn(Optional.of(new StockMovement(1L, SODA_ID, 10, AT.plusSeconds(5), null)));
+
+        assertThrows(SodaNotFoundException.class, () -> stockHistoryService.quantityAt(SODA_ID, AT));
+    }
+}
@@ -0,0 +1,67 @@
+package one.digitalinnovation.sodastock.stock;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.SodaSizeAggregateDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SodaSizeAggregatesTest {
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @InjectMocks
+    private SodaSizeAggregates sodaSizeAggregates;
+
+    @BeforeEach
+    void setUp() {
+        when(sodaRepository.aggregateBySize()).thenReturn(Arrays.asList(
+                new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 30L),
+                new SodaSizeAggregateDTO(SodaSize.SMALL, 1L, 5L)));
+        sodaSizeAggregates.rebuild();
+    }
+
+    @Test
+    void whenRebuiltThenEverySizeIsAnsweredAndMissingSizesAreZero() {
+
+        assertThat(aggregateOf(SodaSize.BIG), equalTo(new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 30L)));
+        assertThat(aggregateOf(SodaSize.SMALL), equalTo(new SodaSizeAggregateDTO(SodaSize.SMALL, 1L, 5L)));
+        assertThat(aggregateOf(SodaSize.VERYBIG), equalTo(new SodaSizeAggregateDTO(SodaSize.VERYBIG, 0L, 0L)));
+    }
+
+    @Test
+    void whenSodasChangeThenTheAggregatesOfTheirSizeFollow() {
+
+        SodaDTO sodaDTO = SodaDTOBuilder.builder().size(SodaSize.BIG).quantity(10).build().toSodaDTO();
+
+        sodaSizeAggregates.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, sodaDTO, 10));
+        sodaSizeAggregates.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, 5));
+        sodaSizeAggregates.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, sodaDTO, -3));
+
+        assertThat(aggregateOf(SodaSize.BIG), equalTo(new SodaSizeAggregateDTO(SodaSize.BIG, 3L, 42L)));
+
+        sodaSizeAggregates.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, sodaDTO, -12));
+
+        assertThat(aggregateOf(SodaSize.BIG), equalTo(new SodaSizeAggregateDTO(SodaSize.BIG, 2L, 30L)));
+    }
+
+    private SodaSizeAggregateDTO aggregateOf(SodaSize size) {
+        return sodaSizeAggregates.aggregates().get(size.ordinal());
+    }
+}
@@ -0,0 +1,184 @@
+package one.digitalinnovation.sodastock.stock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaSize;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockCombinerTest {
+
+    private static final long SODA_ID = 1L;
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockCombiner stockCombiner;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockCombiner = new StockCombiner(true, sodaRepository, stockLedger, transactionManager, 256, meterRegistry);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void whenAdjustmentsQueueUpThenTheyAreWrittenTogetherAndJudgedInArrivalOrder() throws Exception {
+
+        CountDownLatch firstReadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRead = new CountDownLatch(1);
+        AtomicReference<Soda> row = new AtomicReference<>(sodaWith(10, 0L));
+        when(sodaRepository.findCurrentById(SODA_ID)).thenAnswer(invocation -> {
+            if (firstReadStarted.getCount() > 0) {
+                firstReadStarted.countDown();
+                releaseFirstRead.await(5, TimeUnit.SECONDS);
+            }
+            return Optional.of(row.get());
+        });
+        when(sodaRepository.compareAndSetQuantity(SODA_ID, 0L, 15)).thenAnswer(invocation -> {
+            row.set(sodaWith(15, 1L));
+            return 1;
+        });
+        when(sodaRepository.compareAndSetQuantity(SODA_ID, 1L, 50)).thenReturn(1);
+
+        Future<SodaDTO> first = executor.submit(() -> stockCombiner.adjust(SODA_ID, 5));
+        firstReadStarted.await(5, TimeUnit.SECONDS);
+        Future<SodaDTO> fits = queue(-12);
+        Future<SodaDTO> overflows = queue(50);
+        Future<SodaDTO> fills = queue(47);
+        releaseFirstRead.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(15));
+        assertThat(fits.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(3));
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> overflows.get(5, TimeUnit.SECONDS));
+        assertThat(thrown.getCause(), instanceOf(SodaStockExceededException.class));
+        assertThat(fills.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(50));
+        verify(sodaRepository).compareAndSetQuantity(SODA_ID, 1L, 50);
+        verify(stockLedger).recordAll(Arrays.asList(new StockMovementDTO(SODA_ID, -12), new StockMovementDTO(SODA_ID, 47)));
+        assertThat(meterRegistry.summary("sodastock.combining.batch").count(), equalTo(2L));
+        assertThat(meterRegistry.summary("sodastock.combining.batch").totalAmount(), equalTo(4.0));
+    }
+
+    @Test
+    void whenMoreAdjustmentsQueueThanTheBatchCapThenEachPassTakesAtMostTheCap() throws Exception {
+
+        stockCombiner = new StockCombiner(true, sodaRepository, stockLedger, transactionManager, 2, meterRegistry);
+        CountDownLatch firstReadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRead = new CountDownLatch(1);
+        AtomicReference<Soda> row = new AtomicReference<>(sodaWith(10, 0L));
+        when(sodaRepository.findCurrentById(SODA_ID)).thenAnswer(invocation -> {
+            if (firstReadStarted.getCount() > 0) {
+                firstReadStarted.countDown();
+                releaseFirstRead.await(5, TimeUnit.SECONDS);
+            }
+            return Optional.of(row.get());
+        });
+        when(sodaRepository.compareAndSetQuantity(eq(SODA_ID), anyLong(), anyInt())).thenAnswer(invocation -> {
+            row.set(sodaWith(invocation.getArgument(2), row.get().getVersion() + 1));
+            return 1;
+        });
+
+        Future<SodaDTO> first = executor.submit(() -> stockCombiner.adjust(SODA_ID, 1));
+        firstReadStarted.await(5, TimeUnit.SECONDS);
+        Future<SodaDTO> second = queue(1);
+        Future<SodaDTO> third = queue(1);
+        Future<SodaDTO> fourth = queue(1);
+        releaseFirstRead.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(11));
+        assertThat(second.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(12));
+        assertThat(third.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(13));
+        assertThat(fourth.get(5, TimeUnit.SECONDS).getQuantity(), equalTo(14));
+        assertThat(meterRegistry.summary("sodastock.combining.batch").count(), equalTo(3L));
+        assertThat(meterRegistry.summary("sodastock.combining.batch").max(), equalTo(2.0));
+        assertThat(stockCombiner.laneCount(), equalTo(0));
+    }
+
+    @Test
+    void whenAnotherWriterChangesTheSodaThenTheBatchIsReplayedOnTheNewRow() throws Exception {
+
+        when(sodaRepository.findCurrentById(SODA_ID)).thenReturn(Optional.of(sodaWith(10, 0L)), Optional.of(sodaWith(20, 1L)));
+        when(sodaRepository.compareAndSetQuantity(SODA_ID, 0L, 15)).thenReturn(0);
+        when(sodaRepository.compareAndSetQuantity(SODA_ID, 1L, 25)).thenReturn(1);
+
+        SodaDTO adjustedSoda = stockCombiner.adjust(SODA_ID, 5);
+
+        assertThat(adjustedSoda.getQuantity(), equalTo(25));
+        assertThat(meterRegistry.counter("sodastock.combining.conflicts").count(), equalTo(1.0));
+        verify(stockLedger).recordAll(Collections.singletonList(new StockMovementDTO(SODA_ID, 5)));
+    }
+
+    @Test
+    void whenSodaDoesNotExistThenAnExceptionIsThrown() {
+
+        when(sodaRepository.findCurrentById(SODA_ID)).thenReturn(Optional.empty());
+
+        assertThrows(SodaNotFoundException.class, () -> stockCombiner.adjust(SODA_ID, 5));
+        assertThat(stockCombiner.laneCount(), equalTo(0));
+    }
+
+    private Future<SodaDTO> queue(int delta) throws InterruptedException {
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        Future<SodaDTO> result = executor.submit(() -> {
+            caller.set(Thread.currentThread());
+            return stockCombiner.adjust(SODA_ID, delta);
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((caller.get() == null || caller.get().getState() != Thread.State.TIMED_WAITING) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return result;
+    }
+
+    private static Soda sodaWith(int quantity, long version) {
+        return new Soda(SODA_ID, "Mineiro", 50, quantity, 0, SodaSize.BIG, version);
+    }
+}
@@ -0,0 +1,103 @@
+package one.digitalinnovation.sodastock.stock;
+
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLevelIndexTest {
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    private SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    @InjectMocks
+    private StockLevelIndex stockLevelIndex;
+
+    private SodaDTO emptySoda;
+    private SodaDTO halfSoda;
+    private SodaDTO fullSoda;
+
+    @BeforeEach
+    void setUp() {
+        emptySoda = SodaDTOBuilder.builder().id(1L).name("Guarana").max(50).quantity(0).build().toSodaDTO();
+        halfSoda = SodaDTOBuilder.builder().id(2L).name("Tubaina").max(50).quantity(25).build().toSodaDTO();
+        fullSoda = SodaDTOBuilder.builder().id(3L).name("Coca-cola").max(50).quantity(50).build().toSodaDTO();
+        when(sodaRepository.findAll()).thenReturn(Arrays.asList(
+                sodaMapper.toModel(halfSoda), sodaMapper.toModel(fullSoda), sodaMapper.toModel(emptySoda)));
+        stockLevelIndex.load();
+    }
+
+    @Test
+    void whenSodasAreBelowTheThresholdThenTheyAreReturnedFromTheEmptiest() {
+
+        assertThat(namesOf(stockLevelIndex.findBelow(0.6, 10)), contains("Guarana", "Tubaina"));
+        assertThat(stockLevelIndex.findBelow(0.0, 10), empty());
+    }
+
+    @Test
+    void whenSodasAreAboveTheThresholdThenTheyAreReturnedFromTheFullest() {
+
+        assertThat(namesOf(stockLevelIndex.findAbove(0.4, 10)), contains("Coca-cola", "Tubaina"));
+        assertThat(namesOf(stockLevelIndex.findAbove(0.4, 1)), contains("Coca-cola"));
+    }
+
+    @Test
+    void whenStockChangesArriveInAnyOrderThenTheIndexAppliesEveryDelta() {
+
+        SodaDTO afterSecondChange = SodaDTOBuilder.builder().id(2L).name("Tubaina").max(50).quantity(5).build().toSodaDTO();
+        SodaDTO afterFirstChange = SodaDTOBuilder.builder().id(2L).name("Tubaina").max(50).quantity(15).build().toSodaDTO();
+
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, afterSecondChange, -10));
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, afterFirstChange, -10));
+
+        List<SodaDTO> lowSodas = stockLevelIndex.findBelow(0.2, 10);
+        assertThat(namesOf(lowSodas), contains("Guarana", "Tubaina"));
+        assertThat(lowSodas.get(1).getQuantity(), equalTo(5));
+    }
+
+    @Test
+    void whenSodaIsCreatedOrDeletedThenTheIndexFollows() {
+
+        SodaDTO newSoda = SodaDTOBuilder.builder().id(4L).name("Fanta").max(50).quantity(1).build().toSodaDTO();
+
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.CREATED, newSoda, 1));
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, emptySoda, 0));
+
+        assertThat(namesOf(stockLevelIndex.findBelow(0.1, 10)), contains("Fanta"));
+    }
+
+    @Test
+    void whenStockChangesForAnUnknownSodaThenItIsNotAdded() {
+
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, emptySoda, 0));
+        stockLevelIndex.onSodaChanged(new SodaChangedEvent(SodaChangeType.STOCK_CHANGED, emptySoda, 1));
+
+        assertThat(stockLevelIndex.find(emptySoda.getId()).isPresent(), equalTo(false));
+        assertThat(namesOf(stockLevelIndex.findBelow(0.6, 10)), contains("Tubaina"));
+    }
+
+    private static List<String> namesOf(List<SodaDTO> sodas) {
+        return sodas.stream().map(SodaDTO::getName).collect(Collectors.toList());
+    }
+}
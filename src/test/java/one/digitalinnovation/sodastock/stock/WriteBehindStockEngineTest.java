@@ -0,0 +1,271 @@
+package one.digitalinnovation.sodastock.stock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.dto.SodaDTO;
+import one.digitalinnovation.sodastock.dto.StockMovementDTO;
+import one.digitalinnovation.sodastock.entity.Soda;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import one.digitalinnovation.sodastock.exception.SodaNotFoundException;
+import one.digitalinnovation.sodastock.exception.SodaStockExceededException;
+import one.digitalinnovation.sodastock.ledger.StockLedger;
+import one.digitalinnovation.sodastock.mapper.SodaMapper;
+import one.digitalinnovation.sodastock.repository.SodaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindStockEngineTest {
+
+    private static final long INVALID_SODA_ID = 2L;
+
+    @Mock
+    private SodaRepository sodaRepository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SodaMapper sodaMapper = SodaMapper.INSTANCE;
+
+    private SodaDTO sodaDTO;
+
+    private WriteBehindStockEngine stockEngine;
+
+    @BeforeEach
+    void setUp() {
+        sodaDTO = SodaDTOBuilder.builder().build().toSodaDTO();
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000L), ZoneOffset.UTC);
+        stockEngine = new WriteBehindStockEngine(true, sodaRepository, stockLedger, transactionManager, eventPublisher,
+                new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void whenAdjustIsCalledThenTheSodaIsLoadedOnceAndAdjustedInMemory() throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+
+        stockEngine.adjust(sodaDTO.getId(), 15);
+        SodaDTO adjustedSodaDTO = stockEngine.adjust(sodaDTO.getId(), -5);
+
+        assertThat(adjustedSodaDTO.getQuantity(), equalTo(20));
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.of(20)));
+        verify(sodaRepository, times(1)).findById(sodaDTO.getId());
+    }
+
+    @Test
+    void whenAdjustLeavesTheStockBoundsThenAnExceptionIsThrown() {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+
+        assertThrows(SodaStockExceededException.class, () -> stockEngine.adjust(sodaDTO.getId(), 41));
+        assertThrows(SodaStockExceededException.class, () -> stockEngine.adjust(sodaDTO.getId(), -11));
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.of(10)));
+    }
+
+    @Test
+    void whenAdjustIsCalledWithInvalidIdThenAnExceptionIsThrown() {
+
+        when(sodaRepository.findById(INVALID_SODA_ID)).thenReturn(Optional.empty());
+
+        assertThrows(SodaNotFoundException.class, () -> stockEngine.adjust(INVALID_SODA_ID, 1));
+    }
+
+    @Test
+    void whenAdjustWouldTakeReservedUnitsThenAnExceptionIsThrown() {
+
+        Soda soda = sodaMapper.toModel(sodaDTO);
+        soda.setReserved(4);
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(soda));
+
+        assertThrows(SodaStockExceededException.class, () -> stockEngine.adjust(sodaDTO.getId(), -7));
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.of(10)));
+    }
+
+    @Test
+    void whenFlushIsCalledThenOnlyTheDeltasSinceTheLastFlushAreWritten() throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        when(sodaRepository.adjustQuantities(anyList())).thenReturn(new int[]{1});
+        stockEngine.adjust(sodaDTO.getId(), 5);
+        stockEngine.flush();
+        stockEngine.adjust(sodaDTO.getId(), -2);
+        stockEngine.flush();
+        stockEngine.flush();
+
+        verify(sodaRepository, times(1)).adjustQuantities(movementOf(5));
+        verify(sodaRepository, times(1)).adjustQuantities(movementOf(-2));
+        verify(sodaRepository, times(2)).adjustQuantities(anyList());
+        verify(stockLedger).recordAll(movementOf(5));
+        verify(stockLedger).recordAll(movementOf(-2));
+    }
+
+    @Test
+    void whenFlushFailsThenTheDeltasAreWrittenOnTheNextFlush() throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        stockEngine.adjust(sodaDTO.getId(), 5);
+        when(sodaRepository.adjustQuantities(movementOf(5)))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(new int[]{1});
+
+        stockEngine.flush();
+        stockEngine.flush();
+
+        verify(sodaRepository, times(2)).adjustQuantities(movementOf(5));
+        verify(stockLedger, times(1)).recordAll(movementOf(5));
+    }
+
+    @Test
+    void whenTheDatabaseRejectsADeltaThenWhatFitsIsReappliedTheRestCompensatedAndTheSodaReloaded()
+            throws SodaNotFoundException, SodaStockExceededException {
+
+        Soda changedSoda = sodaWith(48, 3L);
+        Soda reappliedSoda = sodaWith(50, 4L);
+        when(sodaRepository.findById(sodaDTO.getId()))
+                .thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)))
+                .thenReturn(Optional.of(reappliedSoda));
+        when(sodaRepository.adjustQuantities(movementOf(5))).thenReturn(new int[]{0});
+        when(sodaRepository.findCurrentById(sodaDTO.getId())).thenReturn(Optional.of(changedSoda));
+        when(sodaRepository.compareAndSetQuantity(sodaDTO.getId(), 3L, 50)).thenReturn(1);
+        stockEngine.adjust(sodaDTO.getId(), 5);
+
+        stockEngine.flush();
+
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == -3 && event.getSoda().getQuantity() == 50));
+        verify(stockLedger).recordAll(Collections.emptyList());
+        verify(stockLedger).record(sodaDTO.getId(), 2);
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.empty()));
+        assertThrows(SodaStockExceededException.class, () -> stockEngine.adjust(sodaDTO.getId(), 5));
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.of(50)));
+    }
+
+    @Test
+    void whenTheRowKeepsChangingWhileADeltaIsReappliedThenTheWholeDeltaIsCompensated()
+            throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        when(sodaRepository.adjustQuantities(movementOf(5))).thenReturn(new int[]{0});
+        when(sodaRepository.findCurrentById(sodaDTO.getId())).thenReturn(Optional.of(sodaWith(20, 7L)));
+        when(sodaRepository.compareAndSetQuantity(sodaDTO.getId(), 7L, 25)).thenReturn(0);
+        stockEngine.adjust(sodaDTO.getId(), 5);
+
+        stockEngine.flush();
+
+        verify(sodaRepository, times(3)).compareAndSetQuantity(sodaDTO.getId(), 7L, 25);
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event -> event.getDelta() == -5));
+    }
+
+    @Test
+    void whenAHoldIsPlacedOnTheRowThenTheNextFlushStopsDecrementsIntoIt() throws SodaNotFoundException, SodaStockExceededException {
+
+        Soda heldSoda = sodaWith(9, 1L);
+        heldSoda.setReserved(8);
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        when(sodaRepository.adjustQuantities(movementOf(-1))).thenReturn(new int[]{1});
+        when(sodaRepository.findAllById(Collections.singletonList(sodaDTO.getId()))).thenReturn(Collections.singletonList(heldSoda));
+        stockEngine.adjust(sodaDTO.getId(), -1);
+
+        stockEngine.flush();
+
+        assertThrows(SodaStockExceededException.class, () -> stockEngine.adjust(sodaDTO.getId(), -2));
+        assertThat(stockEngine.adjust(sodaDTO.getId(), -1).getQuantity(), equalTo(8));
+    }
+
+    @Test
+    void whenACounterStaysCleanForAFlushIntervalThenItIsEvicted() throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        when(sodaRepository.adjustQuantities(anyList())).thenReturn(new int[]{1});
+        stockEngine.adjust(sodaDTO.getId(), 5);
+
+        stockEngine.flush();
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.of(15)));
+        stockEngine.flush();
+
+        assertThat(stockEngine.quantityOf(sodaDTO.getId()), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void whenSodaIsDeletedThenItsQuantityIsNotFlushed() throws SodaNotFoundException, SodaStockExceededException {
+
+        when(sodaRepository.findById(sodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(sodaDTO)));
+        stockEngine.adjust(sodaDTO.getId(), 5);
+
+        stockEngine.onSodaChanged(new SodaChangedEvent(SodaChangeType.DELETED, sodaDTO, -sodaDTO.getQuantity()));
+        stockEngine.flush();
+
+        verify(sodaRepository, never()).adjustQuantities(anyList());
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<SodaChangedEvent>argThat(event ->
+                event.getType() == SodaChangeType.STOCK_CHANGED && event.getDelta() == -5));
+    }
+
+    @Test
+    void whenManyThreadsAdjustTheSameSodaThenNoAdjustmentIsLost() throws Exception {
+
+        SodaDTO bigSodaDTO = SodaDTOBuilder.builder().max(100_000).quantity(0).build().toSodaDTO();
+        when(sodaRepository.findById(bigSodaDTO.getId())).thenReturn(Optional.of(sodaMapper.toModel(bigSodaDTO)));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    stockEngine.adjust(bigSodaDTO.getId(), 2);
+                    stockEngine.adjust(bigSodaDTO.getId(), -1);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        assertThat(stockEngine.quantityOf(bigSodaDTO.getId()), equalTo(Optional.of(8_000)));
+    }
+
+    private Soda sodaWith(int quantity, long version) {
+        Soda soda = sodaMapper.toModel(sodaDTO);
+        soda.setQuantity(quantity);
+        soda.setVersion(version);
+        return soda;
+    }
+
+    private List<StockMovementDTO> movementOf(int delta) {
+        return Collections.singletonList(new StockMovementDTO(sodaDTO.getId(), delta));
+    }
+}
@@ -0,0 +1,38 @@
+package one.digitalinnovation.sodastock.stream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class StockEventRingTest {
+
+    @Test
+    void whenEventsAreAppendedThenTheyAreReadBackBySequence() {
+        StockEventRing ring = new StockEventRing(4);
+
+        assertThat(ring.append("created", "{\"a\":1}"), equalTo(1L));
+        assertThat(ring.append("deleted", "{\"a\":2}"), equalTo(2L));
+
+        assertThat(ring.lastSequence(), equalTo(2L));
+        assertThat(ring.get(1).getName(), equalTo("created"));
+        assertThat(ring.get(2).getData(), equalTo("{\"a\":2}"));
+        assertThat(ring.get(3), nullValue());
+        assertThat(ring.get(0), nullValue());
+    }
+
+    @Test
+    void whenRingWrapsThenOverwrittenEventsAreGone() {
+        StockEventRing ring = new StockEventRing(3);
+
+        for (int i = 0; i < 6; i++) {
+            ring.append("stock_changed", Integer.toString(i));
+        }
+
+        assertThat(ring.capacity(), equalTo(4));
+        assertThat(ring.get(2), nullValue());
+        assertThat(ring.get(3).getData(), equalTo("2"));
+        assertThat(ring.get(6).getData(), equalTo("5"));
+    }
+}
@@ -0,0 +1,231 @@
+package one.digitalinnovation.sodastock.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.sodastock.builder.SodaDTOBuilder;
+import one.digitalinnovation.sodastock.enums.SodaChangeType;
+import one.digitalinnovation.sodastock.event.SodaChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StockEventStreamTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockEventStream stockEventStream;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockEventStream = new StockEventStream(new ObjectMapper(), meterRegistry, 4, 2, 100, 15_000, Duration.ofMinutes(1),
+                Duration.ofSeconds(1), 4, Runnable::run, Clock.fixed(Instant.ofEpochMilli(1_000L), ZoneOffset.UTC));
+    }
+
+    @Test
+    void whenSodasChangeThenEachSubscriberReceivesTheChangesFromItsOwnPosition() {
+        RecordingEmitter early = new RecordingEmitter();
+        stockEventStream.subscribe(early, null);
+        publish(SodaChangeType.CREATED, 0);
+        RecordingEmitter late = new RecordingEmitter();
+        stockEventStream.subscribe(late, null);
+        publish(SodaChangeType.STOCK_CHANGED, -2);
+
+        stockEventStream.dispatch();
+
+        assertThat(early.eventIds(), contains("1", "2"));
+        assertThat(late.eventIds(), contains("2"));
+        assertThat(late.events.get(0), containsString("event:stock_changed\ndata:{\"type\":\"STOCK_CHANGED\",\"delta\":-2,"));
+        assertThat(meterRegistry.get("sodastock.stream.subscribers").gauge().value(), equalTo(2.0));
+    }
+
+    @Test
+    void whenSubscriberReconnectsWithLastEventIdThenItResumesAfterIt() {
+        publish(SodaChangeType.CREATED, 0);
+        publish(SodaChangeType.STOCK_CHANGED, 3);
+        publish(SodaChangeType.STOCK_CHANGED, -1);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        stockEventStream.subscribe(emitter, stockEventStream.eventId(1));
+        stockEventStream.dispatch();
+
+        assertThat(emitter.eventIds(), contains("2", "3"));
+        assertThat(emitter.events.get(0), startsWith("id:" + stockEventStream.eventId(2) + "\n"));
+    }
+
+    @Test
+    void whenSubscriberReconnectsWithLastEventIdFromBeforeARestartThenItGetsAResync() {
+        publish(SodaChangeType.CREATED, 0);
+        publish(SodaChangeType.STOCK_CHANGED, 3);
+        publish(SodaChangeType.STOCK_CHANGED, -1);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        stockEventStream.subscribe(emitter, "0-1");
+        stockEventStream.dispatch();
+
+        assertThat(emitter.events.get(0), startsWith("id:" + stockEventStream.eventId(3) + "\nevent:resync\n"));
+        assertThat(emitter.eventIds(), contains("3"));
+    }
+
+    @Test
+    void whenSubscriberReconnectsWithAMalformedLastEventIdThenItGetsAResync() {
+        publish(SodaChangeType.CREATED, 0);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        stockEventStream.subscribe(emitter, "1");
+        stockEventStream.dispatch();
+
+        assertThat(emitter.events.get(0), containsString("event:resync\n"));
+        assertThat(meterRegistry.counter("sodastock.stream.resyncs").count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenSubscriberFallsAWholeRingBehindThenItGetsAResyncAndGoesOnFromTheLatestEvent() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stockEventStream.subscribe(emitter, null);
+        for (int i = 0; i < 6; i++) {
+            publish(SodaChangeType.STOCK_CHANGED, 1);
+        }
+
+        stockEventStream.dispatch();
+        publish(SodaChangeType.STOCK_CHANGED, 1);
+        stockEventStream.dispatch();
+
+        assertThat(emitter.events.get(0), startsWith("id:" + stockEventStream.eventId(6) + "\nevent:resync\n"));
+        assertThat(emitter.eventIds(), contains("6", "7"));
+        assertThat(meterRegistry.counter("sodastock.stream.resyncs").count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenSubscriberIsBehindThenEachDispatchSendsAtMostMaxBatchEvents() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stockEventStream.subscribe(emitter, null);
+        publish(SodaChangeType.STOCK_CHANGED, 1);
+        publish(SodaChangeType.STOCK_CHANGED, 1);
+        publish(SodaChangeType.STOCK_CHANGED, 1);
+
+        stockEventStream.dispatch();
+        assertThat(emitter.eventIds(), contains("1", "2"));
+
+        stockEventStream.dispatch();
+        assertThat(emitter.eventIds(), contains("1", "2", "3"));
+    }
+
+    @Test
+    void whenSendingFailsThenTheSubscriberIsDropped() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.failing = true;
+        stockEventStream.subscribe(emitter, null);
+        publish(SodaChangeType.CREATED, 0);
+
+        stockEventStream.dispatch();
+        emitter.failing = false;
+        publish(SodaChangeType.DELETED, 0);
+        stockEventStream.dispatch();
+
+        assertThat(emitter.events, empty());
+        assertThat(meterRegistry.get("sodastock.stream.subscribers").gauge().value(), equalTo(0.0));
+    }
+
+    @Test
+    void whenASubscriberStallsThenItIsDroppedAfterTheSendTimeoutAndItsSendNoLongerHoldsUpTheOthers() throws Exception {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1_000L);
+        ExecutorService senders = Executors.newCachedThreadPool();
+        meterRegistry = new SimpleMeterRegistry();
+        stockEventStream = new StockEventStream(new ObjectMapper(), meterRegistry, 4, 2, 100, 15_000, Duration.ofMinutes(1),
+                Duration.ofSeconds(1), 1, senders, clock);
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        stockEventStream.subscribe(stalled, null);
+        stockEventStream.subscribe(healthy, null);
+        publish(SodaChangeType.CREATED, 0);
+
+        stockEventStream.dispatch();
+        assertThat(stalled.sendStarted.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(healthy.sent.getCount(), equalTo(1L));
+        when(clock.millis()).thenReturn(5_000L);
+        stockEventStream.dispatch();
+        assertThat(healthy.sent.await(5, TimeUnit.SECONDS), equalTo(true));
+        stalled.releaseSend.countDown();
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(healthy.eventIds(), contains("1"));
+        assertThat(stalled.failed, equalTo(true));
+        assertThat(meterRegistry.counter("sodastock.stream.stalls").count(), equalTo(1.0));
+        assertThat(meterRegistry.get("sodastock.stream.subscribers").gauge().value(), equalTo(1.0));
+    }
+
+    private void publish(SodaChangeType type, int delta) {
+        stockEventStream.onSodaChanged(new SodaChangedEvent(type, SodaDTOBuilder.builder().build().toSodaDTO(), delta));
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private final CountDownLatch sent = new CountDownLatch(1);
+        private boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(builder.build().stream()
+                    .map(dataWithMediaType -> dataWithMediaType.getData().toString())
+                    .collect(Collectors.joining()));
+            sent.countDown();
+        }
+
+        private List<String> eventIds() {
+            return events.stream()
+                    .map(event -> event.substring(event.indexOf('-') + 1, event.indexOf('\n')))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseSend = new CountDownLatch(1);
+        private volatile boolean failed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sendStarted.countDown();
+            try {
+                releaseSend.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failed = true;
+        }
+    }
+}